@@ -1,8 +1,11 @@
 package com.example.tripminglematching.config;
 
 
+import java.util.concurrent.Executors;
+
 import com.example.tripminglematching.listener.RedisMessageSubscriber;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
@@ -39,11 +42,20 @@ public class RedisConfig {
         return redisTemplate;
     }
 
+    //matching.transport가 streams면 RedisStreamConsumer가 대신 읽는다.
+    //메시지는 스레드 하나에서 받은 순서대로 디코딩해서 레인(UserEventBatcher)에 넣는다. 같은 유저의 추가 뒤 삭제가 뒤집히지 않는다.
+    //레인이 가득 차면 이 스레드만 기다리고, 그동안 온 메시지는 실행기 큐에 쌓인다. (기본 실행기처럼 메시지마다 스레드를 만들지 않는다)
     @Bean
+    @ConditionalOnProperty(name = "matching.transport", havingValue = "pubsub", matchIfMissing = true)
     public RedisMessageListenerContainer redisContainer(RedisConnectionFactory connectionFactory,
                                                         MessageListenerAdapter messageListener) {
         RedisMessageListenerContainer container = new RedisMessageListenerContainer();
         container.setConnectionFactory(connectionFactory);  // RedisConnectionFactory를 설정합니다.
+        container.setTaskExecutor(Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "redis-subscriber");
+            thread.setDaemon(true);
+            return thread;
+        }));
 
         container.addMessageListener(messageListener, addUserTopic());
         container.addMessageListener(messageListener, deleteUserTopic());
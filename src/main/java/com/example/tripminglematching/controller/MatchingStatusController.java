@@ -0,0 +1,72 @@
+package com.example.tripminglematching.controller;
+
+import java.util.List;
+import java.util.Optional;
+
+import com.example.tripminglematching.listener.EventLanes;
+import com.example.tripminglematching.listener.LaneReport;
+import com.example.tripminglematching.listener.RedisStreamConsumer;
+import com.example.tripminglematching.listener.StreamReport;
+import com.example.tripminglematching.service.BoardVectorCache;
+import com.example.tripminglematching.service.CacheReport;
+import com.example.tripminglematching.service.InterningReport;
+import com.example.tripminglematching.service.MatchingResultCache;
+import com.example.tripminglematching.service.NeighborSearch;
+import com.example.tripminglematching.service.ProfileInterner;
+import com.example.tripminglematching.service.RecallReport;
+
+import lombok.RequiredArgsConstructor;
+
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+// 오토스케일링과 튜닝에 쓰는 매칭 서버 내부 상태를 조회한다.
+@RestController
+@RequestMapping("/matching/status")
+@RequiredArgsConstructor
+public class MatchingStatusController {
+
+    private final EventLanes eventLanes;
+    private final Optional<RedisStreamConsumer> redisStreamConsumer;
+    private final BoardVectorCache boardVectorCache;
+    private final MatchingResultCache matchingResultCache;
+    private final NeighborSearch neighborSearch;
+    private final ProfileInterner profileInterner;
+
+    //레인별 대기 작업 수와 큐가 가득 찬 레인 수
+    @GetMapping("/lanes")
+    public LaneReport lanes() {
+        return eventLanes.report();
+    }
+
+    //consumer group별 lag와 pending. transport가 pubsub이면 빈 목록이다.
+    @GetMapping("/streams")
+    public List<StreamReport> streams() {
+        return redisStreamConsumer.map(RedisStreamConsumer::report).orElse(List.of());
+    }
+
+    //정규화된 게시물 벡터 캐시의 적중률
+    @GetMapping("/board-cache")
+    public CacheReport boardCache() {
+        return boardVectorCache.report();
+    }
+
+    //(나라, 후보 게시물 집합)별 전체 매칭 결과 캐시의 적중률
+    @GetMapping("/result-cache")
+    public CacheReport resultCache() {
+        return matchingResultCache.report();
+    }
+
+    //HNSW 근사 검색의 recall과 질의당 시간. 전수 비교 모드(recall-target 1.0)면 본문이 비어 있다.
+    @GetMapping("/recall")
+    public RecallReport recall() {
+        return neighborSearch.lastReport();
+    }
+
+    //같은 벡터의 유저를 프로필로 묶은 압축률(users / profiles)
+    @GetMapping("/interning")
+    public InterningReport interning() {
+        return profileInterner.lastReport();
+    }
+}
@@ -18,7 +18,7 @@ public class UserPersonality {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
-    @OneToOne
+    @OneToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id", nullable = false)
     private User user;
 
@@ -60,4 +60,34 @@ public class UserPersonality {
         );
     }
 
+    //toFeatureVector와 같은 가중치. 응답 순서는 필드 선언 순서(gender ~ ageRange)이다.
+    private static final double[] FEATURE_WEIGHTS = {
+        12.0, 12.0, 12.0, 12.0, 8.0, 10.0, 7.0, 7.0, 9.0, 9.0, 9.0, 9.0, 9.0, 7.0, 12.0, 12.0
+    };
+
+    public static double[] featureWeights() {
+        return FEATURE_WEIGHTS.clone();
+    }
+
+    public double[] toFeatureArray() {
+        return toFeatureArray(toAnswerArray());
+    }
+
+    //가중치를 곱하기 전의 응답 값 (gender ~ ageRange)
+    public double[] toAnswerArray() {
+        return new double[] {
+            gender, vegan, islam, hindu, smoking, budget, accommodationFlexibility, foodFlexibility,
+            activity, photo, foodExploration, adventure, personality, schedule, drink, ageRange
+        };
+    }
+
+    //엔티티 없이 응답 값(projection 등)만으로 특성 배열을 만든다.
+    public static double[] toFeatureArray(double[] answers) {
+        double[] features = new double[FEATURE_WEIGHTS.length];
+        for (int i = 0; i < FEATURE_WEIGHTS.length; i++) {
+            features[i] = (answers[i] - 3.0) * FEATURE_WEIGHTS[i];
+        }
+        return features;
+    }
+
 }
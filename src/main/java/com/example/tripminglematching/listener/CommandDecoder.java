@@ -0,0 +1,171 @@
+package com.example.tripminglematching.listener;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+import com.example.tripminglematching.listener.MatchingCommand.AddUser;
+import com.example.tripminglematching.listener.MatchingCommand.Delete;
+import com.example.tripminglematching.listener.MatchingCommand.Match;
+import com.example.tripminglematching.listener.MatchingCommand.Recalculate;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+
+import org.springframework.stereotype.Component;
+
+// 구독 메시지 본문(byte[])을 트리를 만들지 않고 스트리밍 파서로 바로 명령 레코드로 읽는다.
+// 게시 측 직렬화 때문에 본문이 JSON 문자열로 한 번 더 감싸여 오면, 안쪽 문자열을 파서의 문자 버퍼에서 바로 다시 파싱한다.
+// 감싸지 않은 JSON 객체(스트림 항목 등)도 그대로 읽는다. 파서 버퍼는 JsonFactory가 스레드별로 재사용한다.
+@Component
+public class CommandDecoder {
+
+    private static final byte[] ADD_USER = RedisMessageSubscriber.ADD_USER_PUBLISH.getBytes(StandardCharsets.UTF_8);
+    private static final byte[] RE_CALCULATE_USER = RedisMessageSubscriber.RE_CALCULATE_USER_PUBLISH.getBytes(StandardCharsets.UTF_8);
+    private static final byte[] DELETE_USER = RedisMessageSubscriber.DELETE_USER_PUBLISH.getBytes(StandardCharsets.UTF_8);
+    private static final byte[] MATCHING_USER = RedisMessageSubscriber.MATCHING_USER.getBytes(StandardCharsets.UTF_8);
+
+    private enum Kind { ADD_USER, RE_CALCULATE_USER, DELETE_USER, MATCHING_USER }
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    //모르는 채널이면 null
+    public MatchingCommand decode(byte[] channel, byte[] body) throws IOException {
+        Kind kind = kindOf(channel);
+        if (kind == null) {
+            return null;
+        }
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            return decode(kind, parser);
+        }
+    }
+
+    public MatchingCommand decode(String channel, String body) throws IOException {
+        Kind kind = kindOf(channel.getBytes(StandardCharsets.UTF_8));
+        if (kind == null) {
+            return null;
+        }
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            return decode(kind, parser);
+        }
+    }
+
+    private static Kind kindOf(byte[] channel) {
+        if (Arrays.equals(channel, ADD_USER)) {
+            return Kind.ADD_USER;
+        }
+        if (Arrays.equals(channel, RE_CALCULATE_USER)) {
+            return Kind.RE_CALCULATE_USER;
+        }
+        if (Arrays.equals(channel, DELETE_USER)) {
+            return Kind.DELETE_USER;
+        }
+        if (Arrays.equals(channel, MATCHING_USER)) {
+            return Kind.MATCHING_USER;
+        }
+        return null;
+    }
+
+    private MatchingCommand decode(Kind kind, JsonParser parser) throws IOException {
+        JsonToken token = parser.nextToken();
+        if (token == JsonToken.VALUE_STRING) {
+            //안쪽 파서를 다 읽을 때까지 바깥 파서를 움직이지 않으므로 버퍼를 그대로 넘겨도 된다.
+            try (JsonParser inner = jsonFactory.createParser(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength())) {
+                return decode(kind, inner);
+            }
+        }
+        if (token != JsonToken.START_OBJECT) {
+            throw new IOException("expected a JSON object but got " + token);
+        }
+
+        Long userPersonalityId = null;
+        Long userId = null;
+        String messageId = null;
+        String countryName = null;
+        LocalDate startDate = null;
+        LocalDate endDate = null;
+        boolean fastPath = false;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case "userPersonalityId":
+                    userPersonalityId = parser.getValueAsLong();
+                    break;
+                case "userId":
+                    userId = parser.getValueAsLong();
+                    break;
+                case "messageId":
+                    messageId = rawText(parser, value);
+                    break;
+                case "countryName":
+                    countryName = parser.getText();
+                    break;
+                case "startDate":
+                    startDate = date(parser, value);
+                    break;
+                case "endDate":
+                    endDate = date(parser, value);
+                    break;
+                //fastPath가 없으면 정확한 안정 매칭
+                case "fastPath":
+                    fastPath = parser.getValueAsBoolean(false);
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+
+        switch (kind) {
+            case ADD_USER:
+                return new AddUser(required(userPersonalityId, "userPersonalityId"), required(messageId, "messageId"));
+            case RE_CALCULATE_USER:
+                return new Recalculate(required(userPersonalityId, "userPersonalityId"), required(messageId, "messageId"));
+            case DELETE_USER:
+                return new Delete(required(userPersonalityId, "userPersonalityId"), required(messageId, "messageId"));
+            default:
+                return new Match(required(userId, "userId"), required(messageId, "messageId"), required(countryName, "countryName"),
+                    required(startDate, "startDate"), required(endDate, "endDate"), fastPath);
+        }
+    }
+
+    //예전과 같이 JsonNode.toString()의 결과(문자열이면 따옴표로 감싼 JSON 표기)를 쓴다.
+    private static String rawText(JsonParser parser, JsonToken value) throws IOException {
+        if (value != JsonToken.VALUE_STRING) {
+            return parser.getText();
+        }
+        StringBuilder quoted = new StringBuilder(parser.getTextLength() + 2).append('"');
+        JsonStringEncoder.getInstance().quoteAsString(parser.getText(), quoted);
+        return quoted.append('"').toString();
+    }
+
+    //[년, 월, 일] 배열
+    private static LocalDate date(JsonParser parser, JsonToken value) throws IOException {
+        if (value != JsonToken.START_ARRAY) {
+            throw new IOException("expected a [year, month, day] array but got " + value);
+        }
+        int[] parts = new int[3];
+        for (int i = 0; i < parts.length; i++) {
+            if (parser.nextToken() == JsonToken.END_ARRAY) {
+                throw new IOException("date array is too short");
+            }
+            parts[i] = parser.getValueAsInt();
+        }
+        for (JsonToken token = parser.nextToken(); token != JsonToken.END_ARRAY; token = parser.nextToken()) {
+            if (token == null) {
+                throw new IOException("unterminated date array");
+            }
+            parser.skipChildren();
+        }
+        return LocalDate.of(parts[0], parts[1], parts[2]);
+    }
+
+    private static <T> T required(T value, String field) throws IOException {
+        if (value == null) {
+            throw new IOException("missing field " + field);
+        }
+        return value;
+    }
+}
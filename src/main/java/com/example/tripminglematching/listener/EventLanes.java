@@ -0,0 +1,127 @@
+package com.example.tripminglematching.listener;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+// 구독 메시지를 키(유저 성향 id 등)별 직렬 레인에서 실행한다. 같은 키의 작업은 들어온 순서대로 하나씩 돌고,
+// 다른 레인의 작업은 동시에 돈다. 레인은 스레드 하나짜리 풀이고 키의 해시로 고른다.
+// 유저 추가/재계산/삭제와 매칭은 서로 다른 레인에서 동시에 돌고, 공유 상태는 MatchingService(유저 상태 락)와
+// UserVectorStore(읽기/쓰기 락)가 필요한 구간만 지킨다.
+// 레인 상태(report)는 /matching/status/lanes로 본다.
+// 레인 큐가 가득 차면 구독 스레드가 자리가 날 때까지 기다린다. (순서를 지키기 위해 버리거나 대신 실행하지 않는다)
+@Slf4j
+@Component
+public class EventLanes {
+
+    private final ThreadPoolExecutor[] lanes;
+    private final int queueCapacity;
+
+    //레인별 대기 + 실행 중인 작업 수
+    private final AtomicIntegerArray depths;
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong blockedSubmits = new AtomicLong();
+
+    public EventLanes(@Value("${matching.lanes.count:0}") int count,
+                      @Value("${matching.lanes.queue-capacity:1000}") int queueCapacity) {
+        int laneCount = count > 0 ? count : Runtime.getRuntime().availableProcessors();
+        this.queueCapacity = queueCapacity;
+        this.lanes = new ThreadPoolExecutor[laneCount];
+        this.depths = new AtomicIntegerArray(laneCount);
+        for (int i = 0; i < laneCount; i++) {
+            String name = "event-lane-" + i;
+            lanes[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(queueCapacity),
+                runnable -> new Thread(runnable, name), EventLanes::waitForSpace);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        for (ThreadPoolExecutor lane : lanes) {
+            lane.shutdown();
+        }
+        for (ThreadPoolExecutor lane : lanes) {
+            lane.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    public void submit(long key, Runnable task) {
+        int lane = laneOf(key);
+        if (lanes[lane].getQueue().remainingCapacity() == 0) {
+            blockedSubmits.incrementAndGet();
+            log.debug("event lane {} is full : {}", lane, report());
+        }
+        depths.incrementAndGet(lane);
+        submitted.incrementAndGet();
+        try {
+            lanes[lane].execute(() -> run(lane, task));
+        } catch (RejectedExecutionException e) {
+            depths.decrementAndGet(lane);
+            throw e;
+        }
+    }
+
+    public LaneReport report() {
+        int queued = 0;
+        int maxDepth = 0;
+        int busyLanes = 0;
+        int saturatedLanes = 0;
+        for (int lane = 0; lane < lanes.length; lane++) {
+            int depth = depths.get(lane);
+            queued += depth;
+            maxDepth = Math.max(maxDepth, depth);
+            if (depth > 0) {
+                busyLanes++;
+            }
+            if (lanes[lane].getQueue().remainingCapacity() == 0) {
+                saturatedLanes++;
+            }
+        }
+        return new LaneReport(lanes.length, queueCapacity, queued, maxDepth, busyLanes, saturatedLanes,
+            submitted.get(), completed.get(), blockedSubmits.get());
+    }
+
+    int laneCount() {
+        return lanes.length;
+    }
+
+    int laneOf(long key) {
+        //연속된 id가 같은 레인에 몰리지 않도록 섞는다.
+        return (int) (((key * 0x9E3779B97F4A7C15L) >>> 32) % lanes.length);
+    }
+
+    private void run(int lane, Runnable task) {
+        try {
+            task.run();
+        } catch (RuntimeException e) {
+            log.error("event lane {} task failed", lane, e);
+        } finally {
+            depths.decrementAndGet(lane);
+            completed.incrementAndGet();
+        }
+    }
+
+    //같은 키는 한 스레드만 넣으므로(pub/sub은 RedisConfig의 구독 스레드 하나, streams는 그룹별 읽는 스레드, 묶음은 UserEventBatcher의 레인별 락 안)
+    //여기서 기다려도 레인 안의 순서는 그대로다.
+    private static void waitForSpace(Runnable runnable, ThreadPoolExecutor lane) {
+        if (lane.isShutdown()) {
+            throw new RejectedExecutionException("event lane is shut down");
+        }
+        try {
+            lane.getQueue().put(runnable);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException(e);
+        }
+    }
+}
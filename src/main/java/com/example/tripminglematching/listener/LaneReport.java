@@ -0,0 +1,7 @@
+package com.example.tripminglematching.listener;
+
+// 이벤트 레인 상태. queued는 모든 레인의 대기 + 실행 중 작업 수, saturatedLanes는 큐가 가득 찬 레인 수,
+// blockedSubmits는 큐가 가득 차서 구독 스레드가 기다린 횟수이다.
+public record LaneReport(int lanes, int queueCapacity, int queued, int maxDepth, int busyLanes, int saturatedLanes,
+                         long submitted, long completed, long blockedSubmits) {
+}
@@ -0,0 +1,22 @@
+package com.example.tripminglematching.listener;
+
+import java.time.LocalDate;
+
+// 구독 메시지 하나를 디코딩한 명령. messageId는 응답에 그대로 돌려주는 값이라 JSON 토큰 원문(문자열이면 따옴표 포함)이다.
+public sealed interface MatchingCommand {
+
+    String messageId();
+
+    record AddUser(Long userPersonalityId, String messageId) implements MatchingCommand {
+    }
+
+    record Recalculate(Long userPersonalityId, String messageId) implements MatchingCommand {
+    }
+
+    record Delete(Long userPersonalityId, String messageId) implements MatchingCommand {
+    }
+
+    record Match(Long userId, String messageId, String countryName, LocalDate startDate, LocalDate endDate,
+                 boolean fastPath) implements MatchingCommand {
+    }
+}
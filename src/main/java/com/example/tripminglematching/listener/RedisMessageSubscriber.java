@@ -1,15 +1,12 @@
 package com.example.tripminglematching.listener;
 
-import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
-
+import com.example.tripminglematching.listener.MatchingCommand.AddUser;
+import com.example.tripminglematching.listener.MatchingCommand.Delete;
+import com.example.tripminglematching.listener.MatchingCommand.Match;
+import com.example.tripminglematching.listener.MatchingCommand.Recalculate;
 import com.example.tripminglematching.service.MatchingService;
 import com.example.tripminglematching.service.MessagePublisher;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 
-import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
@@ -23,70 +20,71 @@ import org.springframework.stereotype.Component;
 public class RedisMessageSubscriber implements MessageListener {
 
     private final MatchingService matchingService;
+    private final EventLanes eventLanes;
+    private final UserEventBatcher userEventBatcher;
     public static final String ADD_USER_PUBLISH = "pubsub:addUser";
     public static final String RE_CALCULATE_USER_PUBLISH = "pubsub:reCalculateUser";
     public static final String DELETE_USER_PUBLISH = "pubsub:deleteUser";
     public static final String MATCHING_USER = "pubsub:matching";
 
-    private static final ObjectMapper objectMapper = new ObjectMapper();
     private final MessagePublisher messagePublisher;
+    private final CommandDecoder commandDecoder;
 
-    @PostConstruct
-    private void init() {
-        objectMapper.registerModule(new JavaTimeModule());
-    }
-
+    //RedisConfig의 구독 스레드 하나에서 순서대로 불린다. 디코딩해서 레인에 넣기만 하고 처리는 레인에서 한다.
     @Override
     public void onMessage(Message message, byte[] pattern) {
-        String channel = new String(message.getChannel());
-        log.info("sub : "+channel);
-        String messageBody = new String(message.getBody());
-        StringBuilder cleanedMessageBody = new StringBuilder();
-        for (char ch : messageBody.toCharArray()) {
-            if (ch != '\\') {
-                cleanedMessageBody.append(ch);
-            }
+        MatchingCommand command;
+        try {
+            command = commandDecoder.decode(message.getChannel(), message.getBody());
+        } catch (Exception e) {
+            e.printStackTrace();
+            return;
         }
-        messageBody = cleanedMessageBody.substring(1, cleanedMessageBody.length()-1).toString();
+        //pub/sub은 다시 보내 주지 않으므로 확인할 것이 없다.
+        dispatch(command, () -> {});
+    }
 
+    //acknowledge는 처리가 끝난 뒤(실패 응답을 보낸 경우 포함) 한 번 불린다. 디코딩하지 못한 메시지는 바로 불린다.
+    public void dispatch(String channel, String messageBody, Runnable acknowledge) {
+        MatchingCommand command;
         try {
-            JsonNode jsonNode = objectMapper.readTree(messageBody);
-            String messageId="";
-            Long userPersonalityId=0L;
-
-            switch (channel) {
-                case(ADD_USER_PUBLISH):
-                    userPersonalityId = jsonNode.get("userPersonalityId").asLong();
-                    messageId = jsonNode.get("messageId").toString();
-                    matchingService.addUserPersonality(userPersonalityId, messageId);
-                    break;
-
-                case(RE_CALCULATE_USER_PUBLISH):
-                    userPersonalityId = jsonNode.get("userPersonalityId").asLong();
-                    messageId = jsonNode.get("messageId").toString();
-                    matchingService.recalculateUserPersonality(userPersonalityId,messageId);
-                    break;
-
-                case(DELETE_USER_PUBLISH):
-                    userPersonalityId = jsonNode.get("userPersonalityId").asLong();
-                    messageId = jsonNode.get("messageId").toString();
-                    matchingService.deleteUserPersonality(userPersonalityId, messageId);
-                    break;
+            command = commandDecoder.decode(channel, messageBody);
+        } catch (Exception e) {
+            acknowledge.run();
+            e.printStackTrace();
+            return;
+        }
+        dispatch(command, acknowledge);
+    }
 
-                case(MATCHING_USER):
-                    Long userId = jsonNode.get("userId").asLong();
-                    messageId = jsonNode.get("messageId").toString();
-                    String countryName = jsonNode.get("countryName").toString().substring(1, jsonNode.get("countryName").toString().length()-1);
-                    JsonNode startDateNode = jsonNode.get("startDate");
-                    JsonNode endDateNode = jsonNode.get("endDate");
-                    LocalDate startDate = LocalDate.of(startDateNode.get(0).asInt(), startDateNode.get(1).asInt(), startDateNode.get(2).asInt());
-                    LocalDate endDate = LocalDate.of(endDateNode.get(0).asInt(), endDateNode.get(1).asInt(), endDateNode.get(2).asInt());
-                    //matchingService.matchUserAndBoard(userId,messageId,countryName,startDate,endDate);
-                    break;
+    //매칭은 유저 id별 레인으로 넘긴다.
+    //성향 추가/재계산은 UserEventBatcher가 모아서 보내고, 삭제는 모아 둔 것을 먼저 보낸 뒤 같은 레인에 넣는다.
+    private void dispatch(MatchingCommand command, Runnable acknowledge) {
+        if (command == null) {
+            acknowledge.run();
+            return;
+        }
+        log.info("sub : {}", command.getClass().getSimpleName());
+        try {
+            if (command instanceof AddUser addUser) {
+                userEventBatcher.add(addUser.userPersonalityId(), addUser.messageId(), false, acknowledge);
+            } else if (command instanceof Recalculate recalculate) {
+                userEventBatcher.add(recalculate.userPersonalityId(), recalculate.messageId(), true, acknowledge);
+            } else if (command instanceof Delete delete) {
+                userEventBatcher.delete(delete.userPersonalityId(), delete.messageId(), acknowledge);
+            } else if (command instanceof Match match) {
+                eventLanes.submit(match.userId(), () -> {
+                    try {
+                        matchingService.matchUserAndBoard(match.userId(), match.messageId(), match.countryName(),
+                            match.startDate(), match.endDate(), match.fastPath());
+                    } finally {
+                        acknowledge.run();
+                    }
+                });
             }
         }catch (Exception e) {
+            acknowledge.run();
             e.printStackTrace();
         }
-
     }
 }
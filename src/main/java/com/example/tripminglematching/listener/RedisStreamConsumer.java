@@ -0,0 +1,261 @@
+package com.example.tripminglematching.listener;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.example.tripminglematching.service.ShardAssignment;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.Limit;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.PendingMessage;
+import org.springframework.data.redis.connection.stream.PendingMessages;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.connection.stream.StreamInfo.XInfoGroup;
+import org.springframework.data.redis.core.StreamOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+// matching.transport가 streams일 때 pub/sub 대신 Redis Streams에서 요청을 읽는다.
+// 유저 추가/재계산/삭제 스트림은 인스턴스마다 자기 consumer group(group:consumer)으로 읽는다.
+// 인스턴스마다 유저 벡터, 선호 목록, HNSW, 게시물 벡터 캐시를 메모리에 들고 있고 이 이벤트로만 고치므로 pub/sub처럼 모든 인스턴스가 모두 반영해야 한다.
+// 그 응답은 pub/sub과 같이 유저를 맡은 샤드의 인스턴스가 보낸다. (샤딩하지 않으면 인스턴스마다 보낸다)
+// 매칭 스트림만 모든 인스턴스가 같은 consumer group으로 읽어서 한 요청은 한 인스턴스만 처리한다.
+// 샤딩하면 매칭 요청은 그 유저를 맡은 샤드만 답하므로 공유 그룹을 샤드마다 따로(group:shard-<index>) 둔다. 모든 샤드가 모든 요청을 받고, 같은 샤드의 인스턴스끼리 나눈다.
+// 그룹마다 읽는 스레드가 하나씩 있고 XREADGROUP 한 번에 count개씩 읽으며, 처리가 끝나야 XACK 한다. 레인이 가득 차면 읽는 스레드가 기다리므로 그만큼 덜 가져온다.
+// 죽은 인스턴스가 가져가고 확인하지 못한 매칭 요청은 min-idle-ms가 지나면 다른 인스턴스가 XCLAIM 해서 다시 처리한다.
+// 인스턴스 그룹에서는 같은 이름으로 다시 뜬 인스턴스가 가져온다. 그래서 min-idle-ms는 메시지 하나를 처리하는 가장 긴 시간보다 길어야 한다.
+// 인스턴스 그룹은 처음 만들 때 JVM이 뜬 시각부터 읽는다. 시작하면서 DB에서 유저를 읽는 동안 들어온 이벤트도 반영된다. (두 번 반영해도 결과는 같다)
+// consumer 이름을 비워 두면 종료할 때 인스턴스 그룹을 지우고, 이름을 정해 두면 그룹이 남아서 재시작한 뒤 이어서 읽는다.
+// 스트림 항목의 message 필드는 pub/sub 메시지와 같은 JSON이다. 응답은 그대로 pub/sub으로 보낸다.
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "matching.transport", havingValue = "streams")
+public class RedisStreamConsumer {
+
+    public static final String ADD_USER_STREAM = "stream:addUser";
+    public static final String RE_CALCULATE_USER_STREAM = "stream:reCalculateUser";
+    public static final String DELETE_USER_STREAM = "stream:deleteUser";
+    public static final String MATCHING_STREAM = "stream:matching";
+    public static final String MESSAGE_FIELD = "message";
+
+    //스트림 -> 같은 요청의 pub/sub 채널
+    private static final Map<String, String> CHANNELS = Map.of(
+        ADD_USER_STREAM, RedisMessageSubscriber.ADD_USER_PUBLISH,
+        RE_CALCULATE_USER_STREAM, RedisMessageSubscriber.RE_CALCULATE_USER_PUBLISH,
+        DELETE_USER_STREAM, RedisMessageSubscriber.DELETE_USER_PUBLISH,
+        MATCHING_STREAM, RedisMessageSubscriber.MATCHING_USER);
+    //메모리 상태를 바꾸는 스트림(인스턴스 그룹)과 한 인스턴스만 처리하면 되는 스트림(공유 그룹)
+    private static final List<String> USER_STREAMS = List.of(ADD_USER_STREAM, RE_CALCULATE_USER_STREAM, DELETE_USER_STREAM);
+    private static final List<String> MATCHING_STREAMS = List.of(MATCHING_STREAM);
+    //lag를 셀 때 최대 이만큼만 훑는다.
+    private static final int LAG_SCAN_LIMIT = 10_000;
+
+    private final RedisMessageSubscriber redisMessageSubscriber;
+    private final StreamOperations<String, Object, Object> streams;
+    private final String group;
+    private final String instanceGroup;
+    private final String consumer;
+    private final boolean temporaryConsumer;
+    private final int count;
+    private final Duration block;
+    private final Duration minIdle;
+    private final long claimIntervalMillis;
+
+    //이 인스턴스가 가져가서 아직 확인하지 않은 항목(스트림/id). 스스로 다시 가져오지 않도록 거른다.
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+
+    private volatile boolean running;
+    private final List<Thread> readers = new ArrayList<>();
+
+    public RedisStreamConsumer(RedisMessageSubscriber redisMessageSubscriber, StringRedisTemplate stringRedisTemplate,
+                               ShardAssignment shardAssignment,
+                               @Value("${matching.streams.group:tripmingle-matching}") String group,
+                               @Value("${matching.streams.consumer:}") String consumer,
+                               @Value("${matching.streams.count:100}") int count,
+                               @Value("${matching.streams.block-ms:2000}") long blockMillis,
+                               @Value("${matching.streams.min-idle-ms:60000}") long minIdleMillis,
+                               @Value("${matching.streams.claim-interval-ms:30000}") long claimIntervalMillis) {
+        this.redisMessageSubscriber = redisMessageSubscriber;
+        this.streams = stringRedisTemplate.opsForStream();
+        //다른 샤드가 가져가서 답하지 않고 확인해 버리지 않도록 샤드마다 그룹을 나눈다.
+        this.group = shardAssignment.isSharded() ? group + ":shard-" + shardAssignment.index() : group;
+        //이름이 없으면 인스턴스마다 새 이름을 쓴다. 재시작 전에 가져간 매칭 요청은 다른 인스턴스가 XCLAIM으로 다시 가져온다.
+        this.temporaryConsumer = consumer.isEmpty();
+        this.consumer = temporaryConsumer ? "matching-" + UUID.randomUUID() : consumer;
+        this.instanceGroup = this.group + ":" + this.consumer;
+        this.count = count;
+        this.block = Duration.ofMillis(blockMillis);
+        this.minIdle = Duration.ofMillis(minIdleMillis);
+        this.claimIntervalMillis = claimIntervalMillis;
+    }
+
+    @PostConstruct
+    void start() {
+        createGroups(instanceGroup, USER_STREAMS, ReadOffset.from(ManagementFactory.getRuntimeMXBean().getStartTime() + "-0"));
+        createGroups(group, MATCHING_STREAMS, ReadOffset.from("0"));
+        running = true;
+        startReader(instanceGroup, USER_STREAMS);
+        startReader(group, MATCHING_STREAMS);
+        log.info("reading streams {} in group {} and {} in group {} as {}", USER_STREAMS, instanceGroup, MATCHING_STREAMS, group, consumer);
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        for (Thread reader : readers) {
+            reader.interrupt();
+        }
+        for (Thread reader : readers) {
+            reader.join(block.toMillis() + 1000);
+        }
+        //다시 쓰지 않을 이름의 그룹은 지운다. (죽어서 남은 그룹은 XINFO GROUPS로 보고 지운다)
+        if (temporaryConsumer) {
+            for (String stream : USER_STREAMS) {
+                try {
+                    streams.destroyGroup(stream, instanceGroup);
+                } catch (RuntimeException e) {
+                    log.warn("failed to destroy consumer group {} on {} : {}", instanceGroup, stream, e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void createGroups(String group, List<String> streamKeys, ReadOffset offset) {
+        for (String stream : streamKeys) {
+            try {
+                //스트림이 없으면 만든다(MKSTREAM). 그룹이 이미 있으면 BUSYGROUP 에러가 나고 그 그룹이 읽던 곳부터 이어서 읽는다.
+                streams.createGroup(stream, offset, group);
+            } catch (RuntimeException e) {
+                log.debug("consumer group {} on {} : {}", group, stream, e.getMessage());
+            }
+        }
+    }
+
+    private void startReader(String group, List<String> streamKeys) {
+        Thread reader = new Thread(() -> readLoop(group, streamKeys), "redis-stream-consumer-" + readers.size());
+        readers.add(reader);
+        reader.start();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readLoop(String group, List<String> streamKeys) {
+        StreamOffset<String>[] offsets = streamKeys.stream()
+            .map(stream -> StreamOffset.create(stream, ReadOffset.lastConsumed()))
+            .toArray(StreamOffset[]::new);
+        StreamReadOptions options = StreamReadOptions.empty().count(count).block(block);
+        long nextClaim = 0;
+        while (running) {
+            try {
+                if (System.currentTimeMillis() >= nextClaim) {
+                    claimIdle(group, streamKeys);
+                    nextClaim = System.currentTimeMillis() + claimIntervalMillis;
+                }
+                List<MapRecord<String, Object, Object>> records = streams.read(Consumer.from(group, consumer), options, offsets);
+                if (records != null) {
+                    records.forEach(record -> dispatch(group, record));
+                }
+            } catch (RuntimeException e) {
+                if (!running) {
+                    break;
+                }
+                log.error("redis stream read failed in group {}", group, e);
+                sleep();
+            }
+        }
+    }
+
+    //오래 확인되지 않은 메시지를 가져와 처리한다. 재시작 전의 같은 이름으로 가져갔던 것도 여기서 다시 처리된다.
+    //처리 중인 항목이 앞쪽에 쌓여 있어도 뒤의 항목을 가져올 수 있도록 pending 목록을 count개씩 끝까지 넘겨 본다.
+    private void claimIdle(String group, List<String> streamKeys) {
+        for (String stream : streamKeys) {
+            Range<String> range = Range.unbounded();
+            while (true) {
+                PendingMessages pending = streams.pending(stream, group, range, count);
+                RecordId[] idle = pending.stream()
+                    .filter(message -> message.getElapsedTimeSinceLastDelivery().compareTo(minIdle) >= 0)
+                    .filter(message -> !inFlight.contains(stream + "/" + message.getIdAsString()))
+                    .map(PendingMessage::getId)
+                    .toArray(RecordId[]::new);
+                if (idle.length > 0) {
+                    List<MapRecord<String, Object, Object>> claimed = streams.claim(stream, group, consumer, minIdle, idle);
+                    log.info("claimed {} idle messages from {}", claimed.size(), stream);
+                    claimed.forEach(record -> dispatch(group, record));
+                }
+                if (pending.size() < count) {
+                    break;
+                }
+                range = Range.of(Range.Bound.exclusive(pending.get(pending.size() - 1).getIdAsString()), Range.Bound.unbounded());
+            }
+        }
+    }
+
+    private void dispatch(String group, MapRecord<String, Object, Object> record) {
+        String stream = record.getStream();
+        RecordId id = record.getId();
+        String key = stream + "/" + id.getValue();
+        Object body = record.getValue().get(MESSAGE_FIELD);
+        if (!inFlight.add(key)) {
+            return;
+        }
+        Runnable acknowledge = () -> {
+            try {
+                streams.acknowledge(stream, group, id);
+            } finally {
+                inFlight.remove(key);
+            }
+        };
+        if (body == null) {
+            log.warn("stream {} entry {} has no {} field", stream, id, MESSAGE_FIELD);
+            acknowledge.run();
+            return;
+        }
+        redisMessageSubscriber.dispatch(CHANNELS.get(stream), body.toString(), acknowledge);
+    }
+
+    //오토스케일링 지표. 그룹마다 lag는 아직 전달되지 않은 항목 수, pending은 전달됐지만 확인되지 않은 항목 수이다.
+    //매칭 요청은 공유 그룹의 lag를, 성향 이벤트는 인스턴스 그룹의 lag를 본다.
+    public List<StreamReport> report() {
+        return List.of(report(instanceGroup, USER_STREAMS), report(group, MATCHING_STREAMS));
+    }
+
+    private StreamReport report(String group, List<String> streamKeys) {
+        long lag = 0;
+        long pending = 0;
+        for (String stream : streamKeys) {
+            XInfoGroup info = streams.groups(stream).stream()
+                .filter(candidate -> candidate.groupName().equals(group))
+                .findFirst().orElse(null);
+            if (info != null) {
+                pending += info.pendingCount();
+                lag += streams.range(stream, Range.of(Range.Bound.exclusive(info.lastDeliveredId()), Range.Bound.unbounded()),
+                    Limit.limit().count(LAG_SCAN_LIMIT)).size();
+            }
+        }
+        return new StreamReport(group, consumer, lag, pending);
+    }
+
+    private void sleep() {
+        try {
+            Thread.sleep(block.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,6 @@
+package com.example.tripminglematching.listener;
+
+// Redis Streams consumer group 하나의 소비 상태. lag는 그룹에 아직 전달되지 않은 항목 수(스트림마다 최대 10000까지 센다),
+// pending은 전달됐지만 XACK 되지 않은 항목 수이다.
+public record StreamReport(String group, String consumer, long lag, long pending) {
+}
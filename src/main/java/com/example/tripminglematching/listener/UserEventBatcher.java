@@ -0,0 +1,154 @@
+package com.example.tripminglematching.listener;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.example.tripminglematching.service.MatchingService;
+import com.example.tripminglematching.service.UserEvent;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+// 유저 추가/재계산 메시지를 window-ms 동안 레인별로 모아서 한 묶음으로 반영한다. 레인의 묶음이 max-size가 되면 그 레인만 바로 보낸다.
+// 같은 유저의 메시지가 여러 번 와도 성향은 한 번만 읽어서 넣고, 유저 행렬도 묶음 전체에 대해 한 번만 훑는다.
+// 메시지는 유저 성향 id의 레인에 들어가므로 같은 유저의 추가/재계산/삭제는 들어온 순서대로 돌고, 다른 레인의 묶음은 동시에 돈다.
+// 삭제가 오면 같은 레인에 모아 둔 묶음을 먼저 보낸다.
+// 묶음은 락 안에서 떼어 내기만 하고 레인에는 락 밖에서 넣는다. 한 레인이 가득 차도 다른 레인의 메시지는 막히지 않고,
+// 그 레인에 넣으려는 스레드(구독 스레드나 타이머)만 기다린다.
+// window-ms가 0이면 모으지 않고 메시지마다 바로 보낸다. 메시지별 acknowledge는 그 묶음(삭제)을 반영한 뒤 부른다.
+@Slf4j
+@Component
+public class UserEventBatcher {
+
+    private final MatchingService matchingService;
+    private final EventLanes eventLanes;
+    private final long windowMillis;
+    private final int maxSize;
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "user-event-batcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    //레인별로 모아 둔 이벤트와 acknowledge. 이 객체의 락 안에서만 바꾼다.
+    private final List<UserEvent>[] pending;
+    private final List<Runnable>[] acknowledgements;
+    //레인별로 레인에 넣을 차례가 된 작업. 락 안에서 순서대로 넣고, 락 밖에서 레인마다 한 스레드씩 꺼내서 넣는다.
+    private final Queue<Runnable>[] outbox;
+    private final ReentrantLock[] submitting;
+    private ScheduledFuture<?> scheduledFlush;
+
+    @SuppressWarnings("unchecked")
+    public UserEventBatcher(MatchingService matchingService, EventLanes eventLanes,
+                            @Value("${matching.batch.window-ms:20}") long windowMillis,
+                            @Value("${matching.batch.max-size:1000}") int maxSize) {
+        this.matchingService = matchingService;
+        this.eventLanes = eventLanes;
+        this.windowMillis = windowMillis;
+        this.maxSize = maxSize;
+        this.pending = new List[eventLanes.laneCount()];
+        this.acknowledgements = new List[eventLanes.laneCount()];
+        this.outbox = new Queue[eventLanes.laneCount()];
+        this.submitting = new ReentrantLock[eventLanes.laneCount()];
+        for (int lane = 0; lane < pending.length; lane++) {
+            pending[lane] = new ArrayList<>();
+            acknowledgements[lane] = new ArrayList<>();
+            outbox[lane] = new ConcurrentLinkedQueue<>();
+            submitting[lane] = new ReentrantLock();
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        flush();
+        timer.shutdown();
+    }
+
+    public void add(Long userPersonalityId, String messageId, boolean recalculate, Runnable acknowledge) {
+        int lane = eventLanes.laneOf(userPersonalityId);
+        synchronized (this) {
+            pending[lane].add(new UserEvent(userPersonalityId, messageId, recalculate));
+            acknowledgements[lane].add(acknowledge);
+            if (windowMillis <= 0 || pending[lane].size() >= maxSize) {
+                takePending(lane);
+            } else if (scheduledFlush == null) {
+                scheduledFlush = timer.schedule(this::flush, windowMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+        submitReady(lane);
+    }
+
+    public void delete(Long userPersonalityId, String messageId, Runnable acknowledge) {
+        int lane = eventLanes.laneOf(userPersonalityId);
+        synchronized (this) {
+            takePending(lane);
+            outbox[lane].add(() -> eventLanes.submit(userPersonalityId, () -> {
+                try {
+                    matchingService.deleteUserPersonality(userPersonalityId, messageId);
+                } finally {
+                    acknowledge.run();
+                }
+            }));
+        }
+        submitReady(lane);
+    }
+
+    public void flush() {
+        synchronized (this) {
+            if (scheduledFlush != null) {
+                scheduledFlush.cancel(false);
+                scheduledFlush = null;
+            }
+            for (int lane = 0; lane < pending.length; lane++) {
+                takePending(lane);
+            }
+        }
+        for (int lane = 0; lane < outbox.length; lane++) {
+            submitReady(lane);
+        }
+    }
+
+    //락 안에서 부른다. 레인의 묶음을 떼어 내서 레인에 넣을 차례로 줄 세운다.
+    private void takePending(int lane) {
+        if (pending[lane].isEmpty()) {
+            return;
+        }
+        List<UserEvent> batch = pending[lane];
+        List<Runnable> batchAcknowledgements = acknowledgements[lane];
+        pending[lane] = new ArrayList<>();
+        acknowledgements[lane] = new ArrayList<>();
+        log.debug("user event batch on lane {} : {} messages", lane, batch.size());
+        //묶음의 유저는 모두 같은 레인이므로 첫 유저의 id로 넣는다.
+        outbox[lane].add(() -> eventLanes.submit(batch.get(0).userPersonalityId(), () -> {
+            try {
+                matchingService.applyUserEvents(batch);
+            } finally {
+                batchAcknowledgements.forEach(Runnable::run);
+            }
+        }));
+    }
+
+    //락 밖에서 부른다. 레인 큐가 가득 차면 여기서 기다리지만 다른 레인의 add/delete는 막지 않는다.
+    //레인마다 한 스레드만 꺼내므로 줄 세운 순서대로 레인에 들어간다.
+    private void submitReady(int lane) {
+        submitting[lane].lock();
+        try {
+            Runnable submit;
+            while ((submit = outbox[lane].poll()) != null) {
+                submit.run();
+            }
+        } finally {
+            submitting[lane].unlock();
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package com.example.tripminglematching.repository;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 import com.example.tripminglematching.entity.Board;
@@ -18,6 +20,30 @@ public interface BoardRepository extends JpaRepository<Board,Long> {
 		@Param("endDate") LocalDate endDate
 	);
 
+	//게시물 색인용. 삭제된 게시물도 알아야 하므로 @Where가 붙지 않는 native 쿼리를 쓴다.
+	//컬럼 순서: id, user_id, country_name, start_date, end_date, updated_at, is_deleted, prefer_gender ~ prefer_drink
+	@Query(value = "SELECT b.id, b.user_id, b.country_name, b.start_date, b.end_date, b.updated_at, b.is_deleted, "
+		+ "b.prefer_gender, b.prefer_smoking, b.prefer_budget, b.prefer_photo, b.prefer_drink "
+		+ "FROM board b WHERE b.is_deleted = false", nativeQuery = true)
+	List<Object[]> findBoardIndexRows();
+
+	@Query(value = "SELECT b.id, b.user_id, b.country_name, b.start_date, b.end_date, b.updated_at, b.is_deleted, "
+		+ "b.prefer_gender, b.prefer_smoking, b.prefer_budget, b.prefer_photo, b.prefer_drink "
+		+ "FROM board b WHERE b.updated_at >= :since", nativeQuery = true)
+	List<Object[]> findBoardIndexRowsUpdatedSince(@Param("since") LocalDateTime since);
+
+	//게시물마다 작성자 성향을 따로 조회하지 않도록 한 번의 쿼리로 가져온다.
+	@Query("SELECT b.id AS boardId, u.id AS authorId, p.id AS authorPersonalityId, "
+		+ "b.preferGender AS preferGender, b.preferSmoking AS preferSmoking, b.preferBudget AS preferBudget, "
+		+ "b.preferPhoto AS preferPhoto, b.preferDrink AS preferDrink, "
+		+ "p.gender AS gender, p.vegan AS vegan, p.islam AS islam, p.hindu AS hindu, p.smoking AS smoking, "
+		+ "p.budget AS budget, p.accommodationFlexibility AS accommodationFlexibility, p.foodFlexibility AS foodFlexibility, "
+		+ "p.activity AS activity, p.photo AS photo, p.foodExploration AS foodExploration, p.adventure AS adventure, "
+		+ "p.personality AS personality, p.schedule AS schedule, p.drink AS drink, p.ageRange AS ageRange "
+		+ "FROM Board b JOIN b.user u LEFT JOIN UserPersonality p ON p.user = u "
+		+ "WHERE b.id IN :boardIds")
+	List<BoardVectorView> findBoardVectorsByIdIn(@Param("boardIds") Collection<Long> boardIds);
+
 	List<Board> findAllByCountryName(String countryName);
 
 	List<Board> findBoardsByCountryName(String countryName);
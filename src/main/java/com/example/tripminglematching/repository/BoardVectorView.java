@@ -0,0 +1,32 @@
+package com.example.tripminglematching.repository;
+
+// 매칭에 필요한 게시물 값과 작성자 성향을 한 행으로 받는 projection.
+// 작성자의 성향이 없으면 authorPersonalityId와 성향 값들이 null이다.
+public interface BoardVectorView {
+    Long getBoardId();
+    Long getAuthorId();
+    Long getAuthorPersonalityId();
+
+    double getPreferGender();
+    double getPreferSmoking();
+    double getPreferBudget();
+    double getPreferPhoto();
+    double getPreferDrink();
+
+    Double getGender();
+    Double getVegan();
+    Double getIslam();
+    Double getHindu();
+    Double getSmoking();
+    Double getBudget();
+    Double getAccommodationFlexibility();
+    Double getFoodFlexibility();
+    Double getActivity();
+    Double getPhoto();
+    Double getFoodExploration();
+    Double getAdventure();
+    Double getPersonality();
+    Double getSchedule();
+    Double getDrink();
+    Double getAgeRange();
+}
@@ -0,0 +1,93 @@
+package com.example.tripminglematching.service;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.example.tripminglematching.utils.SlotBitmap;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.stereotype.Component;
+
+// 성향 응답(1~5)의 속성/값별로 그 값을 고른 유저 슬롯의 비트맵을 들고 있다.
+// UserVectorStore가 슬롯을 put/remove할 때 같이 갱신한다. 소수 응답은 반올림해서 1~5 중 하나로 넣는다.
+@Slf4j
+@Component
+public class AttributeBitmapIndex {
+
+    //UserPersonality 필드 선언 순서와 같다.
+    public static final List<String> ATTRIBUTES = List.of(
+        "gender", "vegan", "islam", "hindu", "smoking", "budget", "accommodationFlexibility", "foodFlexibility",
+        "activity", "photo", "foodExploration", "adventure", "personality", "schedule", "drink", "ageRange");
+    public static final int MIN_LEVEL = 1;
+    public static final int MAX_LEVEL = 5;
+
+    private final SlotBitmap[][] bitmaps = new SlotBitmap[ATTRIBUTES.size()][MAX_LEVEL + 1];
+    //슬롯별로 지금 들어가 있는 값. 0이면 비어 있는 슬롯
+    private byte[] levels = new byte[0];
+
+    public AttributeBitmapIndex() {
+        for (SlotBitmap[] attribute : bitmaps) {
+            for (int level = MIN_LEVEL; level <= MAX_LEVEL; level++) {
+                attribute[level] = new SlotBitmap();
+            }
+        }
+    }
+
+    public synchronized void put(int slot, double[] answers) {
+        remove(slot);
+        int attributes = ATTRIBUTES.size();
+        if (levels.length < (slot + 1) * attributes) {
+            levels = Arrays.copyOf(levels, Math.max((slot + 1) * attributes, levels.length << 1));
+        }
+        for (int attribute = 0; attribute < attributes; attribute++) {
+            int level = level(answers[attribute]);
+            bitmaps[attribute][level].set(slot);
+            levels[slot * attributes + attribute] = (byte) level;
+        }
+    }
+
+    public synchronized void remove(int slot) {
+        int attributes = ATTRIBUTES.size();
+        if (levels.length < (slot + 1) * attributes || levels[slot * attributes] == 0) {
+            return;
+        }
+        for (int attribute = 0; attribute < attributes; attribute++) {
+            bitmaps[attribute][levels[slot * attributes + attribute]].clear(slot);
+            levels[slot * attributes + attribute] = 0;
+        }
+    }
+
+    //비어 있는 슬롯이면 0
+    public synchronized int levelOf(int slot, int attribute) {
+        int index = slot * ATTRIBUTES.size() + attribute;
+        return index < levels.length ? levels[index] : 0;
+    }
+
+    //attribute 값이 [minLevel, maxLevel]인 유저 슬롯. 새로 만든 비트맵이므로 고쳐 써도 된다.
+    public synchronized SlotBitmap slotsBetween(int attribute, int minLevel, int maxLevel) {
+        SlotBitmap slots = new SlotBitmap();
+        for (int level = Math.max(MIN_LEVEL, minLevel); level <= Math.min(MAX_LEVEL, maxLevel); level++) {
+            slots.or(bitmaps[attribute][level]);
+        }
+        return slots;
+    }
+
+    //채워진 블록만 잡는 비트맵이 모든 슬롯을 덮는 평범한 비트맵보다 long을 얼마나 덜 쓰는지 남긴다.
+    public synchronized void logFootprint(int slotLimit) {
+        long bits = 0;
+        long words = 0;
+        for (SlotBitmap[] attribute : bitmaps) {
+            for (int level = MIN_LEVEL; level <= MAX_LEVEL; level++) {
+                bits += attribute[level].cardinality();
+                words += attribute[level].wordCount();
+            }
+        }
+        long flatWords = (long) ATTRIBUTES.size() * (MAX_LEVEL - MIN_LEVEL + 1) * ((slotLimit + 63) >>> 6);
+        log.info("attribute bitmaps : {} bits set in {} words (flat bitmaps {} words)", bits, words, flatWords);
+    }
+
+    public static int level(double answer) {
+        return (int) Math.max(MIN_LEVEL, Math.min(MAX_LEVEL, Math.round(answer)));
+    }
+}
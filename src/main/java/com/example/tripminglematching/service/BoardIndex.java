@@ -0,0 +1,207 @@
+package com.example.tripminglematching.service;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.example.tripminglematching.repository.BoardRepository;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+// 삭제되지 않은 게시물을 나라별로 메모리에 들고 있다가 기간이 겹치는 게시물을 바로 찾는다.
+// 시작 시 전체를 읽고, 이후에는 refresh-interval마다 updated_at이 바뀐 행(삭제 포함)만 읽어서 반영한다.
+// 따라서 최근 refresh-interval 안에 바뀐 게시물은 아직 반영되지 않았을 수 있다.
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class BoardIndex {
+
+    //preferences는 PrefilterRules.BOARD_PREFERENCES 순서의 게시물 선호 값이다.
+    public record IndexedBoard(long boardId, long authorId, String countryName, long startDay, long endDay,
+                               LocalDateTime updatedAt, double[] preferences) {
+    }
+
+    //시작일 오름차순으로 정렬된 나라별 배열. 한 번 만들면 바꾸지 않는다.
+    private record CountryBoards(IndexedBoard[] boards, long[] startDays, long[] endDays) {
+    }
+
+    private final BoardRepository boardRepository;
+    private final BoardVectorCache boardVectorCache;
+
+    private final Object lock = new Object();
+    private final Map<Long, IndexedBoard> boardsById = new HashMap<>();
+    private final Map<String, Set<Long>> boardIdsByCountry = new HashMap<>();
+    private final Map<String, CountryBoards> snapshots = new ConcurrentHashMap<>();
+    private LocalDateTime watermark;
+
+    @PostConstruct
+    void load() {
+        List<Object[]> rows = boardRepository.findBoardIndexRows();
+        synchronized (lock) {
+            rows.forEach(this::apply);
+        }
+        log.info("board index loaded : {} boards in {} countries", boardsById.size(), boardIdsByCountry.size());
+    }
+
+    //같은 시각에 바뀐 행을 놓치지 않도록 watermark와 같은 시각도 다시 읽는다. 다시 반영해도 결과는 같다.
+    @Scheduled(fixedDelayString = "${matching.board-index.refresh-interval-ms:5000}")
+    public void refresh() {
+        LocalDateTime since;
+        synchronized (lock) {
+            since = watermark;
+        }
+        if (since == null) {
+            since = LocalDateTime.of(1970, 1, 1, 0, 0);
+        }
+        List<Object[]> rows = boardRepository.findBoardIndexRowsUpdatedSince(since);
+        synchronized (lock) {
+            rows.forEach(this::apply);
+        }
+    }
+
+    //[startDate, endDate]와 기간이 겹치는 게시물을 게시물 id 오름차순으로 반환한다.
+    public List<IndexedBoard> find(String countryName, LocalDate startDate, LocalDate endDate) {
+        CountryBoards country = snapshot(countryName);
+        if (country == null) {
+            return List.of();
+        }
+        long startDay = startDate.toEpochDay();
+        long endDay = endDate.toEpochDay();
+        //시작일이 endDate 이하인 앞부분만 보면 된다.
+        int limit = upperBound(country.startDays(), endDay);
+        List<IndexedBoard> result = new ArrayList<>();
+        for (int i = 0; i < limit; i++) {
+            if (country.endDays()[i] >= startDay) {
+                result.add(country.boards()[i]);
+            }
+        }
+        result.sort(Comparator.comparingLong(IndexedBoard::boardId));
+        return result;
+    }
+
+    public int size() {
+        synchronized (lock) {
+            return boardsById.size();
+        }
+    }
+
+    //벡터 조회에서 행이 없던(삭제된) 게시물을 다음 refresh를 기다리지 않고 뺀다.
+    public void evict(long boardId) {
+        synchronized (lock) {
+            remove(boardId);
+        }
+        boardVectorCache.evict(boardId);
+    }
+
+    private void apply(Object[] row) {
+        long boardId = ((Number) row[0]).longValue();
+        remove(boardId);
+        LocalDateTime updatedAt = toLocalDateTime(row[5]);
+        if (updatedAt != null && (watermark == null || updatedAt.isAfter(watermark))) {
+            watermark = updatedAt;
+        }
+        if (toBoolean(row[6]) || row[2] == null || row[3] == null || row[4] == null) {
+            //다시 매칭에 나오지 않으므로 캐시된 벡터도 버린다.
+            boardVectorCache.evict(boardId);
+            return;
+        }
+        double[] preferences = new double[PrefilterRules.BOARD_PREFERENCES.size()];
+        for (int i = 0; i < preferences.length; i++) {
+            preferences[i] = ((Number) row[7 + i]).doubleValue();
+        }
+        IndexedBoard board = new IndexedBoard(boardId, ((Number) row[1]).longValue(), (String) row[2],
+            toLocalDate(row[3]).toEpochDay(), toLocalDate(row[4]).toEpochDay(), updatedAt, preferences);
+        boardsById.put(boardId, board);
+        boardIdsByCountry.computeIfAbsent(board.countryName(), k -> new HashSet<>()).add(boardId);
+        snapshots.remove(board.countryName());
+    }
+
+    private void remove(long boardId) {
+        IndexedBoard previous = boardsById.remove(boardId);
+        if (previous != null) {
+            Set<Long> previousCountry = boardIdsByCountry.get(previous.countryName());
+            if (previousCountry != null) {
+                previousCountry.remove(boardId);
+            }
+            snapshots.remove(previous.countryName());
+        }
+    }
+
+    //바뀐 나라는 다음 조회 때 배열을 다시 만든다.
+    private CountryBoards snapshot(String countryName) {
+        CountryBoards country = snapshots.get(countryName);
+        if (country != null) {
+            return country;
+        }
+        synchronized (lock) {
+            Set<Long> boardIds = boardIdsByCountry.get(countryName);
+            if (boardIds == null || boardIds.isEmpty()) {
+                return null;
+            }
+            IndexedBoard[] boards = boardIds.stream()
+                .map(boardsById::get)
+                .sorted(Comparator.comparingLong(IndexedBoard::startDay))
+                .toArray(IndexedBoard[]::new);
+            long[] startDays = new long[boards.length];
+            long[] endDays = new long[boards.length];
+            for (int i = 0; i < boards.length; i++) {
+                startDays[i] = boards[i].startDay();
+                endDays[i] = boards[i].endDay();
+            }
+            country = new CountryBoards(boards, startDays, endDays);
+            snapshots.put(countryName, country);
+            return country;
+        }
+    }
+
+    //values[i] <= key인 마지막 i + 1
+    private static int upperBound(long[] values, long key) {
+        int low = 0;
+        int high = values.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (values[mid] <= key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    //드라이버 설정에 따라 java.sql 타입이나 java.time 타입으로 올 수 있다.
+    private static LocalDate toLocalDate(Object value) {
+        if (value instanceof Date date) {
+            return date.toLocalDate();
+        }
+        return (LocalDate) value;
+    }
+
+    private static LocalDateTime toLocalDateTime(Object value) {
+        if (value instanceof Timestamp timestamp) {
+            return timestamp.toLocalDateTime();
+        }
+        return (LocalDateTime) value;
+    }
+
+    private static boolean toBoolean(Object value) {
+        if (value instanceof Number number) {
+            return number.intValue() != 0;
+        }
+        return Boolean.TRUE.equals(value);
+    }
+}
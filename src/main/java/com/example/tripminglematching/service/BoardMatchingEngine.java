@@ -0,0 +1,239 @@
+package com.example.tripminglematching.service;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import com.example.tripminglematching.service.BoardIndex.IndexedBoard;
+import com.example.tripminglematching.utils.FeatureVector;
+import com.example.tripminglematching.utils.MatchingResult;
+import com.example.tripminglematching.utils.ParallelStableMatcher;
+import com.example.tripminglematching.utils.SlotBitmap;
+import com.example.tripminglematching.utils.StableMatcher;
+import com.example.tripminglematching.utils.StableMatcher.ScoreFunction;
+import com.example.tripminglematching.utils.StableMatchingRepair;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+// 모든 유저와 후보 게시물 사이의 안정 매칭을 만든다.
+// 같은 나라의 이전 결과가 있고 유저/게시물당 최대 매칭 수가 그대로면, 바뀐 유저/게시물만 다시 맞추는 repair를 쓴다.
+// 바뀐 양이 많아서 repair 비용이 전체 계산의 max-cost-ratio를 넘으면 처음부터 다시 계산한다.
+// 처음부터 계산할 때 유저 수가 parallel-threshold 이상이면 라운드 단위 병렬 버전을 쓴다. 결과는 같다.
+@Slf4j
+@Component
+public class BoardMatchingEngine {
+
+    private static final double INF = 100.0;
+
+    private final UserVectorStore userVectorStore;
+    private final BoardVectorLoader boardVectorLoader;
+    private final PrefilterRules prefilterRules;
+    private final ProfileInterner profileInterner;
+    private final double maxRepairCostRatio;
+    private final int parallelThreshold;
+    private final double minInterningRatio;
+    private final long maxScoreTableSize;
+    private final ForkJoinPool pool;
+
+    public BoardMatchingEngine(UserVectorStore userVectorStore, BoardVectorLoader boardVectorLoader, PrefilterRules prefilterRules,
+                               ProfileInterner profileInterner,
+                               @Value("${matching.repair.max-cost-ratio:0.25}") double maxRepairCostRatio,
+                               @Value("${matching.stable.parallelism:0}") int parallelism,
+                               @Value("${matching.stable.parallel-threshold:2000}") int parallelThreshold,
+                               @Value("${matching.interning.min-ratio:1.5}") double minInterningRatio,
+                               @Value("${matching.interning.max-table-size:4000000}") long maxScoreTableSize) {
+        this.userVectorStore = userVectorStore;
+        this.boardVectorLoader = boardVectorLoader;
+        this.prefilterRules = prefilterRules;
+        this.profileInterner = profileInterner;
+        this.maxRepairCostRatio = maxRepairCostRatio;
+        this.parallelThreshold = parallelThreshold;
+        this.minInterningRatio = minInterningRatio;
+        this.maxScoreTableSize = maxScoreTableSize;
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        pool.shutdown();
+    }
+
+    public CachedMatching match(List<IndexedBoard> candidates, CachedMatching previous) {
+        //작성자의 성향으로 게시물 벡터를 만든다. (게시물 인덱스 순서 = 게시물 id 순서)
+        BoardVectors boards = boardVectorLoader.load(candidates);
+        int numBoards = boards.size();
+        long[] boardAuthorIds = boards.authorIds();
+        double[] boardVectors = boards.vectors();
+
+        //모든유저 (메모리에 올라와 있는 벡터 사용, 유저 인덱스 순서 = 슬롯 순서)
+        int[] userSlots = userVectorStore.liveSlots();
+        int numUsers = userSlots.length;
+        long[] userIds = new long[numUsers];
+        long[] userVersions = new long[numUsers];
+        int[] userIndexBySlot = new int[userVectorStore.slotLimit()];
+        Arrays.fill(userIndexBySlot, -1);
+        for (int i = 0; i < numUsers; i++) {
+            userIds[i] = userVectorStore.userIdAt(userSlots[i]);
+            userVersions[i] = userVectorStore.slotVersion(userSlots[i]);
+            userIndexBySlot[userSlots[i]] = i;
+        }
+
+        int userMatchingCount = Math.min(MatchingService.MAX_RECOMMENDATIONS, numBoards);
+        int boardCount = Math.max(numBoards, 1);
+        int maxMatchesPerBoard = (numUsers * userMatchingCount)%boardCount == 0
+            ? (numUsers * userMatchingCount)/boardCount : (numUsers * userMatchingCount)/boardCount + 1;
+
+        //게시물 선호 조건에 걸리는 유저는 유사도를 계산하기 전에 비트맵으로 거른다.
+        SlotBitmap[] allowedUsers = prefilterRules.allowedUsers(boards.candidates());
+        //같은 벡터의 유저가 많으면 (프로필, 게시물) 점수를 한 번씩만 계산해 둔다.
+        ProfileClasses classes = profileInterner.intern(userSlots);
+        double[] profileScores = profileScores(classes, boards);
+
+        //만약 유저와 작성자가 동일하다면 선호도를 -INF로 설정하여 선호도를 맨 뒤로 미룬다. (작성자 id는 유저 id이다)
+        ScoreFunction score = (user, board) -> {
+            if (allowedUsers != null && allowedUsers[board] != null && !allowedUsers[board].get(userSlots[user])) {
+                return StableMatcher.EXCLUDED;
+            }
+            if (boardAuthorIds[board] == userIds[user]) {
+                return -INF;
+            }
+            return profileScores != null ? profileScores[classes.profileOf()[user] * numBoards + board] :
+                boards.similarity(board, userVectorStore, userSlots[user]);
+        };
+
+        CachedMatching current = new CachedMatching(boards.boardIds(), boardAuthorIds, boardVectors, boards.squaredNorms(),
+            userSlots, userVersions, userIndexBySlot, userMatchingCount, maxMatchesPerBoard, null, null);
+        MatchingResult result = null;
+        if (previous != null && previous.perUser() == userMatchingCount && previous.capacity() == maxMatchesPerBoard) {
+            result = repair(previous, current, score);
+        }
+        if (result == null && pool.getParallelism() > 1 && numUsers >= parallelThreshold) {
+            result = ParallelStableMatcher.match(numUsers, numBoards, userMatchingCount, maxMatchesPerBoard, score, pool);
+        }
+        if (result == null) {
+            // 게일-섀플리 알고리즘
+            result = StableMatcher.match(numUsers, numBoards, userMatchingCount, maxMatchesPerBoard, score);
+        }
+        return current.withResult(result, cutoffs(result, numBoards, maxMatchesPerBoard, score));
+    }
+
+    //압축 효과가 작거나 표가 너무 크면 null (그때그때 계산)
+    private double[] profileScores(ProfileClasses classes, BoardVectors boards) {
+        int numBoards = boards.size();
+        InterningReport report = classes.report();
+        if (report.compressionRatio() < minInterningRatio || (long) classes.profiles() * numBoards > maxScoreTableSize) {
+            return null;
+        }
+        log.debug("profile interning for matching : {}", report);
+        double[] scores = new double[classes.profiles() * numBoards];
+        for (int profile = 0; profile < classes.profiles(); profile++) {
+            int userSlot = classes.representativeSlots()[profile];
+            for (int board = 0; board < numBoards; board++) {
+                scores[profile * numBoards + board] = boards.similarity(board, userVectorStore, userSlot);
+            }
+        }
+        return scores;
+    }
+
+    //빠른 순위 계산(FastPathRanker)이 게시물의 혼잡도를 추정할 때 쓴다.
+    private static double[] cutoffs(MatchingResult result, int numBoards, int capacity, ScoreFunction score) {
+        int[] counts = new int[numBoards];
+        double[] cutoffs = new double[numBoards];
+        Arrays.fill(cutoffs, Double.POSITIVE_INFINITY);
+        for (int user = 0; user < result.users(); user++) {
+            for (int rank = 0; rank < result.matchCount(user); rank++) {
+                int board = result.boardAt(user, rank);
+                counts[board]++;
+                cutoffs[board] = Math.min(cutoffs[board], score.score(user, board));
+            }
+        }
+        for (int board = 0; board < numBoards; board++) {
+            if (counts[board] < capacity) {
+                cutoffs[board] = Double.NEGATIVE_INFINITY;
+            }
+        }
+        return cutoffs;
+    }
+
+    //current는 아직 결과가 없는 이번 계산의 입력이다. 이전 결과를 현재 인덱스로 옮기고, 없어지거나 바뀐 유저/게시물의 쌍은 빼고 그 상대를 dirty로 표시한다.
+    private MatchingResult repair(CachedMatching previous, CachedMatching current, ScoreFunction score) {
+        int numUsers = current.userSlots().length;
+        int numBoards = current.boardIds().length;
+        int perUser = current.perUser();
+
+        //이전 게시물 인덱스 -> 현재 인덱스 (없어지거나 바뀌었으면 -1)
+        int previousBoards = previous.boardIds().length;
+        int[] boardMap = new int[previousBoards];
+        boolean[] dirtyBoards = new boolean[numBoards];
+        boolean[] mappedBoards = new boolean[numBoards];
+        for (int j = 0; j < previousBoards; j++) {
+            int k = Arrays.binarySearch(current.boardIds(), previous.boardIds()[j]);
+            boardMap[j] = k >= 0 && sameBoard(previous, j, current, k) ? k : -1;
+            if (k >= 0) {
+                mappedBoards[k] = true;
+                dirtyBoards[k] = boardMap[j] < 0;
+            }
+        }
+        for (int k = 0; k < numBoards; k++) {
+            dirtyBoards[k] |= !mappedBoards[k];
+        }
+
+        boolean[] dirtyUsers = new boolean[numUsers];
+        boolean[] mappedUsers = new boolean[numUsers];
+        int[] initialMatches = new int[numUsers * perUser];
+        int[] initialCounts = new int[numUsers];
+        MatchingResult previousResult = previous.result();
+        for (int i = 0; i < previous.userSlots().length; i++) {
+            int slot = previous.userSlots()[i];
+            int user = slot < current.userIndexBySlot().length ? current.userIndexBySlot()[slot] : -1;
+            boolean unchanged = user >= 0 && current.userVersions()[user] == previous.userVersions()[i];
+            if (user >= 0) {
+                mappedUsers[user] = true;
+                dirtyUsers[user] |= !unchanged;
+            }
+            for (int rank = 0; rank < previousResult.matchCount(i); rank++) {
+                int board = boardMap[previousResult.boardAt(i, rank)];
+                if (unchanged && board >= 0) {
+                    initialMatches[user * perUser + initialCounts[user]++] = board;
+                } else {
+                    if (board >= 0) {
+                        dirtyBoards[board] = true;
+                    }
+                    if (user >= 0) {
+                        dirtyUsers[user] = true;
+                    }
+                }
+            }
+        }
+        long dirtyUserCount = 0;
+        long dirtyBoardCount = 0;
+        for (int user = 0; user < numUsers; user++) {
+            dirtyUsers[user] |= !mappedUsers[user];
+            dirtyUserCount += dirtyUsers[user] ? 1 : 0;
+        }
+        for (int board = 0; board < numBoards; board++) {
+            dirtyBoardCount += dirtyBoards[board] ? 1 : 0;
+        }
+
+        //dirty 하나를 훑는 비용은 상대편 수만큼이다.
+        double repairCost = dirtyUserCount * numBoards + dirtyBoardCount * numUsers;
+        if (repairCost > maxRepairCostRatio * numUsers * (double) numBoards) {
+            return null;
+        }
+        log.debug("repairing matching : {} dirty users, {} dirty boards", dirtyUserCount, dirtyBoardCount);
+        return StableMatchingRepair.repair(numUsers, numBoards, perUser, current.capacity(), score,
+            initialMatches, initialCounts, dirtyUsers, dirtyBoards);
+    }
+
+    //작성자와 게시물 벡터, 정수 코드의 노름 제곱이 같으면 그 게시물의 점수는 바뀌지 않았다.
+    private static boolean sameBoard(CachedMatching previous, int j, CachedMatching current, int k) {
+        return previous.boardAuthorIds()[j] == current.boardAuthorIds()[k]
+            && previous.boardSquaredNorms()[j] == current.boardSquaredNorms()[k]
+            && Arrays.equals(previous.boardVectors(), BoardVectors.offset(j), BoardVectors.offset(j) + FeatureVector.DIMENSION,
+                current.boardVectors(), BoardVectors.offset(k), BoardVectors.offset(k) + FeatureVector.DIMENSION);
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.tripminglematching.service;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+// 정규화된 게시물 벡터를 게시물 id로 캐시한다. 가장 오래 안 쓰인 항목부터 max-size를 넘는 만큼 버린다.
+// 게시물의 updatedAt이 바뀌었거나, 만든 뒤에 작성자(유저 id)의 성향이 재계산/삭제되었으면 그 항목은 쓰지 않는다.
+@Component
+public class BoardVectorCache {
+
+    //정규화된 벡터와 정수 코드. 코드가 없으면 codes는 null, squaredNorm은 -1
+    public record CachedVector(double[] vector, byte[] codes, int squaredNorm) {
+    }
+
+    private record Entry(LocalDateTime updatedAt, long authorId, long authorVersion, CachedVector vector) {
+    }
+
+    private final int maxSize;
+    private final Map<Long, Entry> entries;
+    //작성자 유저 id -> 성향 재계산/삭제 횟수
+    private final Map<Long, Long> authorVersions = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public BoardVectorCache(@Value("${matching.board-cache.max-size:10000}") int maxSize) {
+        this.maxSize = maxSize;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+                if (size() > BoardVectorCache.this.maxSize) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    //조회 전에 읽어 둔 버전으로 put 해야 조회 중에 들어온 재계산을 놓치지 않는다.
+    public long authorVersion(long authorId) {
+        return authorVersions.getOrDefault(authorId, 0L);
+    }
+
+    public CachedVector get(long boardId, LocalDateTime updatedAt, long authorId) {
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(boardId);
+        }
+        if (entry != null
+            && Objects.equals(entry.updatedAt(), updatedAt)
+            && entry.authorId() == authorId
+            && entry.authorVersion() == authorVersion(authorId)) {
+            hits.incrementAndGet();
+            return entry.vector();
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    public void put(long boardId, LocalDateTime updatedAt, long authorId, long authorVersion, CachedVector vector) {
+        synchronized (entries) {
+            entries.put(boardId, new Entry(updatedAt, authorId, authorVersion, vector));
+        }
+    }
+
+    //삭제된 게시물은 BoardIndex가 뺄 때 같이 버린다.
+    public void evict(long boardId) {
+        synchronized (entries) {
+            entries.remove(boardId);
+        }
+    }
+
+    //작성자의 성향이 바뀌면 그 작성자의 게시물 항목은 다음 조회에서 다시 만들어진다.
+    public void invalidateAuthor(long authorId) {
+        authorVersions.merge(authorId, 1L, Long::sum);
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public CacheReport report() {
+        return CacheReport.of(size(), maxSize, hits.get(), misses.get(), evictions.get());
+    }
+}
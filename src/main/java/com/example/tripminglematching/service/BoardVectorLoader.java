@@ -0,0 +1,145 @@
+package com.example.tripminglematching.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.example.tripminglematching.entity.UserPersonality;
+import com.example.tripminglematching.exception.UserPersonalityNotFound;
+import com.example.tripminglematching.repository.BoardRepository;
+import com.example.tripminglematching.repository.BoardVectorView;
+import com.example.tripminglematching.service.BoardIndex.IndexedBoard;
+import com.example.tripminglematching.service.BoardVectorCache.CachedVector;
+import com.example.tripminglematching.utils.FeatureVector;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+// 조건에 맞는 게시물의 벡터를 만든다.
+// 게시물 목록은 BoardIndex에서 찾은 것을 받고, 캐시에 없는 게시물만 작성자 성향과 함께 한 번에 조회한다.
+// 조회 결과에 행이 없는 게시물(삭제, 소프트 삭제 포함)은 결과에서 빼고 BoardIndex에서도 지운다.
+@Slf4j
+@Component
+public class BoardVectorLoader {
+
+    private final BoardRepository boardRepository;
+    private final BoardVectorCache boardVectorCache;
+    private final BoardIndex boardIndex;
+    private final boolean quantizedEnabled;
+
+    public BoardVectorLoader(BoardRepository boardRepository, BoardVectorCache boardVectorCache, BoardIndex boardIndex,
+                             @Value("${matching.quantized.enabled:false}") boolean quantizedEnabled) {
+        this.boardRepository = boardRepository;
+        this.boardVectorCache = boardVectorCache;
+        this.boardIndex = boardIndex;
+        this.quantizedEnabled = quantizedEnabled;
+    }
+
+    //작성자의 성향이 없는 게시물이 있으면 UserPersonalityNotFound
+    public BoardVectors load(List<IndexedBoard> boards) {
+        int size = boards.size();
+        long[] boardIds = new long[size];
+        long[] authorIds = new long[size];
+        double[] vectors = new double[size * FeatureVector.DIMENSION];
+        byte[] codes = new byte[size * FeatureVector.DIMENSION];
+        int[] squaredNorms = new int[size];
+        boolean[] loaded = new boolean[size];
+
+        //캐시에 없는 게시물 id -> 게시물 인덱스, 조회 전 작성자 버전
+        Map<Long, Integer> missingIndexes = new HashMap<>();
+        Map<Long, Long> authorVersions = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            IndexedBoard board = boards.get(i);
+            boardIds[i] = board.boardId();
+            authorIds[i] = board.authorId();
+            long authorVersion = boardVectorCache.authorVersion(board.authorId());
+            CachedVector cached = boardVectorCache.get(board.boardId(), board.updatedAt(), board.authorId());
+            if (cached != null) {
+                copy(cached, i, vectors, codes, squaredNorms);
+                loaded[i] = true;
+            } else {
+                missingIndexes.put(board.boardId(), i);
+                authorVersions.put(board.boardId(), authorVersion);
+            }
+        }
+
+        if (!missingIndexes.isEmpty()) {
+            for (BoardVectorView row : boardRepository.findBoardVectorsByIdIn(new ArrayList<>(missingIndexes.keySet()))) {
+                if (row.getAuthorPersonalityId() == null) {
+                    throw new UserPersonalityNotFound();
+                }
+                int index = missingIndexes.get(row.getBoardId());
+                CachedVector built = build(boardVector(row));
+                boardVectorCache.put(row.getBoardId(), boards.get(index).updatedAt(), row.getAuthorId(),
+                    authorVersions.get(row.getBoardId()), built);
+                copy(built, index, vectors, codes, squaredNorms);
+                loaded[index] = true;
+            }
+        }
+        log.debug("board vectors : {} boards, {} rebuilt", size, missingIndexes.size());
+
+        //행이 없는 게시물은 벡터가 0이라 점수가 NaN이 되므로 남은 게시물만 앞으로 당긴다.
+        int kept = 0;
+        List<IndexedBoard> retained = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            if (!loaded[i]) {
+                boardIndex.evict(boardIds[i]);
+                log.debug("board {} has no vector row, dropped from matching", boardIds[i]);
+                continue;
+            }
+            if (kept != i) {
+                boardIds[kept] = boardIds[i];
+                authorIds[kept] = authorIds[i];
+                squaredNorms[kept] = squaredNorms[i];
+                System.arraycopy(vectors, BoardVectors.offset(i), vectors, BoardVectors.offset(kept), FeatureVector.DIMENSION);
+                System.arraycopy(codes, BoardVectors.offset(i), codes, BoardVectors.offset(kept), FeatureVector.DIMENSION);
+            }
+            retained.add(boards.get(i));
+            kept++;
+        }
+        if (kept == size) {
+            return new BoardVectors(boards, boardIds, authorIds, vectors, codes, squaredNorms);
+        }
+        return new BoardVectors(retained, Arrays.copyOf(boardIds, kept), Arrays.copyOf(authorIds, kept),
+            Arrays.copyOf(vectors, kept * FeatureVector.DIMENSION), Arrays.copyOf(codes, kept * FeatureVector.DIMENSION),
+            Arrays.copyOf(squaredNorms, kept));
+    }
+
+    //정수 코드는 정규화 전의 특성 배열로 만든다.
+    private CachedVector build(double[] features) {
+        double[] normalized = FeatureVector.of(features).values();
+        byte[] codes = new byte[FeatureVector.DIMENSION];
+        if (quantizedEnabled && UserVectorStore.KERNEL.encode(features, codes, 0)) {
+            return new CachedVector(normalized, codes, UserVectorStore.KERNEL.squaredNorm(codes, 0));
+        }
+        return new CachedVector(normalized, null, -1);
+    }
+
+    private static void copy(CachedVector cached, int board, double[] vectors, byte[] codes, int[] squaredNorms) {
+        System.arraycopy(cached.vector(), 0, vectors, BoardVectors.offset(board), FeatureVector.DIMENSION);
+        squaredNorms[board] = cached.squaredNorm();
+        if (cached.codes() != null) {
+            System.arraycopy(cached.codes(), 0, codes, BoardVectors.offset(board), FeatureVector.DIMENSION);
+        }
+    }
+
+    //작성자의 특성에 게시물의 선호 조건을 더한다.
+    static double[] boardVector(BoardVectorView row) {
+        double[] vector = UserPersonality.toFeatureArray(new double[] {
+            row.getGender(), row.getVegan(), row.getIslam(), row.getHindu(), row.getSmoking(), row.getBudget(),
+            row.getAccommodationFlexibility(), row.getFoodFlexibility(), row.getActivity(), row.getPhoto(),
+            row.getFoodExploration(), row.getAdventure(), row.getPersonality(), row.getSchedule(),
+            row.getDrink(), row.getAgeRange()
+        });
+        vector[0] += (row.getPreferGender()-3.0) * 24.0;
+        vector[4] += (row.getPreferSmoking()-3.0) * 16.0;
+        vector[9] += (row.getPreferPhoto()-3.0) * 9.0;
+        vector[5] += (row.getPreferBudget()-3.0) * 10.0;
+        vector[14] += (row.getPreferDrink()-3.0) * 24.0;
+        return vector;
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.tripminglematching.service;
+
+import java.util.List;
+
+import com.example.tripminglematching.service.BoardIndex.IndexedBoard;
+import com.example.tripminglematching.utils.FeatureVector;
+import com.example.tripminglematching.utils.QuantizedKernel;
+import com.example.tripminglematching.utils.SimilarityUtils;
+
+// 매칭 대상 게시물들의 primitive 배열. i번째 게시물의 벡터와 정수 코드는 vectors/codes의 i * DIMENSION부터이다.
+// 정수 코드가 없는 게시물은 squaredNorms가 -1
+// candidates는 배열과 같은 순서의 게시물이다. 조회 중 삭제된 게시물이 빠지므로 요청한 목록보다 짧을 수 있다.
+// authorIds는 작성자의 유저 id이다. (성향 id가 아니다)
+public record BoardVectors(List<IndexedBoard> candidates, long[] boardIds, long[] authorIds, double[] vectors, byte[] codes,
+                           int[] squaredNorms) {
+
+    public int size() {
+        return boardIds.length;
+    }
+
+    //게시물과 유저 모두 정수 코드가 있으면 정수 내적, 아니면 정규화된 벡터의 내적
+    public double similarity(int board, UserVectorStore users, int userSlot) {
+        int userNorm = users.squaredNormAt(userSlot);
+        if (squaredNorms[board] >= 0 && userNorm >= 0) {
+            return QuantizedKernel.similarity(UserVectorStore.KERNEL.dot(codes, offset(board), users.codes(), UserVectorStore.offset(userSlot)),
+                squaredNorms[board], userNorm);
+        }
+        return SimilarityUtils.dot(vectors, offset(board), users.matrix(), UserVectorStore.offset(userSlot));
+    }
+
+    public static int offset(int board) {
+        return board * FeatureVector.DIMENSION;
+    }
+}
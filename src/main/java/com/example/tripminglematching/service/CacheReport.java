@@ -0,0 +1,10 @@
+package com.example.tripminglematching.service;
+
+// 캐시 사용 현황. hitRate = hits / (hits + misses), evictions는 크기를 넘어서 버린 항목 수이다.
+public record CacheReport(int size, int maxSize, long hits, long misses, long evictions, double hitRate) {
+
+    static CacheReport of(int size, int maxSize, long hits, long misses, long evictions) {
+        long total = hits + misses;
+        return new CacheReport(size, maxSize, hits, misses, evictions, total == 0 ? 0.0 : (double) hits / total);
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.tripminglematching.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.example.tripminglematching.utils.MatchingResult;
+
+// 한 번 계산한 전체 매칭 결과. 유저 슬롯으로 바로 그 유저의 게시물 목록을 꺼낸다.
+// 다음 계산에서 바뀐 부분만 고칠 수 있도록 계산에 쓴 게시물 벡터(정수 코드의 노름 제곱 포함)와 유저 슬롯/버전도 같이 둔다.
+// boardCutoffs는 게시물별로 자리가 다 찼을 때 가장 낮은 매칭 점수다. 자리가 남았으면 -Infinity
+public record CachedMatching(long[] boardIds, long[] boardAuthorIds, double[] boardVectors, int[] boardSquaredNorms,
+                             int[] userSlots, long[] userVersions, int[] userIndexBySlot,
+                             int perUser, int capacity, MatchingResult result, double[] boardCutoffs) {
+
+    public CachedMatching withResult(MatchingResult matchingResult, double[] cutoffs) {
+        return new CachedMatching(boardIds, boardAuthorIds, boardVectors, boardSquaredNorms, userSlots, userVersions, userIndexBySlot,
+            perUser, capacity, matchingResult, cutoffs);
+    }
+
+    //이 매칭에 없던 게시물이면 NaN
+    public double cutoffOf(long boardId) {
+        int board = Arrays.binarySearch(boardIds, boardId);
+        return board >= 0 ? boardCutoffs[board] : Double.NaN;
+    }
+
+    //매칭에 참여하지 않은 유저면 null
+    public List<Long> boardsOf(int userSlot) {
+        if (userSlot < 0 || userSlot >= userIndexBySlot.length || userIndexBySlot[userSlot] < 0) {
+            return null;
+        }
+        int user = userIndexBySlot[userSlot];
+        List<Long> boards = new ArrayList<>(result.matchCount(user));
+        for (int rank = 0; rank < result.matchCount(user); rank++) {
+            boards.add(boardIds[result.boardAt(user, rank)]);
+        }
+        return boards;
+    }
+}
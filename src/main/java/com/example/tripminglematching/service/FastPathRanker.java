@@ -0,0 +1,112 @@
+package com.example.tripminglematching.service;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.DoubleAdder;
+
+import com.example.tripminglematching.service.BoardIndex.IndexedBoard;
+import com.example.tripminglematching.utils.StableMatcher;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.stereotype.Component;
+
+// 요청한 유저 한 명만 후보 게시물과 비교해서 매칭 목록을 추정한다. (전체 안정 매칭 없이 O(B))
+// 그 나라의 마지막 매칭 결과에서 자리가 다 찬 게시물은 가장 낮은 매칭 점수(cutoff)를 넘어야 들어갈 수 있다고 보고,
+// 들어갈 수 있는 게시물 중 점수가 높은 순서로 MAX_RECOMMENDATIONS개를 고른다. 마지막 결과에 없던 게시물은 자리가 남은 것으로 본다.
+// 같은 요청의 정확한 결과가 이미 캐시에 있으면 두 결과를 대조해서 일치도를 쌓는다.
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FastPathRanker {
+
+    private static final double INF = 100.0;
+
+    private final UserVectorStore userVectorStore;
+    private final BoardVectorLoader boardVectorLoader;
+    private final MatchingResultCache matchingResultCache;
+    private final PrefilterRules prefilterRules;
+
+    private final AtomicLong comparisons = new AtomicLong();
+    private final AtomicLong sameOrders = new AtomicLong();
+    private final DoubleAdder overlaps = new DoubleAdder();
+
+    public List<Long> rank(int userSlot, String countryName, List<IndexedBoard> candidates, long userVersion) {
+        BoardVectors boards = boardVectorLoader.load(candidates);
+        int numBoards = boards.size();
+        long userId = userVectorStore.userIdAt(userSlot);
+        CachedMatching latest = matchingResultCache.latest(countryName);
+
+        double[] scores = new double[numBoards];
+        double[] cutoffs = new double[numBoards];
+        for (int board = 0; board < numBoards; board++) {
+            cutoffs[board] = latest == null ? Double.NaN : latest.cutoffOf(boards.boardIds()[board]);
+            if (!prefilterRules.allows(boards.candidates().get(board).preferences(), userSlot)) {
+                scores[board] = StableMatcher.EXCLUDED;
+                continue;
+            }
+            //만약 유저와 작성자가 동일하다면 선호도를 -INF로 설정하여 선호도를 맨 뒤로 미룬다. (작성자 id는 유저 id이다)
+            scores[board] = boards.authorIds()[board] == userId ? -INF :
+                boards.similarity(board, userVectorStore, userSlot);
+        }
+        int limit = Math.min(MatchingService.MAX_RECOMMENDATIONS, numBoards);
+        List<Long> ranked = rank(scores, cutoffs, boards.boardIds(), limit);
+
+        CachedMatching exact = matchingResultCache.peek(countryName, candidates, userVersion);
+        if (exact != null) {
+            record(ranked, exact.boardsOf(userSlot));
+        }
+        return ranked;
+    }
+
+    public FastPathReport report() {
+        long count = comparisons.get();
+        return new FastPathReport(count, count == 0 ? 0.0 : overlaps.sum() / count,
+            count == 0 ? 0.0 : (double) sameOrders.get() / count);
+    }
+
+    //cutoff를 넘는 게시물 중 점수가 높은 순서로 limit개. 점수가 같으면 게시물 인덱스(id)가 작은 쪽이 먼저다.
+    static List<Long> rank(double[] scores, double[] cutoffs, long[] boardIds, int limit) {
+        int[] top = new int[limit];
+        int size = 0;
+        for (int board = 0; board < scores.length; board++) {
+            //cutoff와 같은 점수는 유저 인덱스에 따라 갈리므로 밀린다고 본다.
+            if (scores[board] == StableMatcher.EXCLUDED || !Double.isNaN(cutoffs[board]) && scores[board] <= cutoffs[board]) {
+                continue;
+            }
+            if (size == limit && (limit == 0 || !StableMatcher.prefers(scores[board], board, scores[top[size - 1]], top[size - 1]))) {
+                continue;
+            }
+            int position = Math.min(size, limit - 1);
+            while (position > 0 && StableMatcher.prefers(scores[board], board, scores[top[position - 1]], top[position - 1])) {
+                top[position] = top[position - 1];
+                position--;
+            }
+            top[position] = board;
+            size = Math.min(size + 1, limit);
+        }
+        List<Long> ranked = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            ranked.add(boardIds[top[i]]);
+        }
+        return ranked;
+    }
+
+    private void record(List<Long> fast, List<Long> exact) {
+        if (exact == null) {
+            return;
+        }
+        Set<Long> exactBoards = new HashSet<>(exact);
+        long common = fast.stream().filter(exactBoards::contains).count();
+        comparisons.incrementAndGet();
+        overlaps.add(exact.isEmpty() ? (fast.isEmpty() ? 1.0 : 0.0) : (double) common / exact.size());
+        if (fast.equals(exact)) {
+            sameOrders.incrementAndGet();
+        }
+        log.debug("fast path agreement : {}", report());
+    }
+}
@@ -0,0 +1,6 @@
+package com.example.tripminglematching.service;
+
+// 빠른 순위 결과를 같은 요청의 정확한 안정 매칭 결과와 대조한 보고서
+// overlap은 두 목록에 함께 있는 게시물 수 / 정확한 목록 크기의 평균, sameOrderRate는 목록이 순서까지 같았던 비율이다.
+public record FastPathReport(long comparisons, double overlap, double sameOrderRate) {
+}
@@ -0,0 +1,5 @@
+package com.example.tripminglematching.service;
+
+// 같은 벡터를 가진 유저를 하나의 프로필로 묶은 결과. compressionRatio = users / profiles
+public record InterningReport(int users, int profiles, double compressionRatio) {
+}
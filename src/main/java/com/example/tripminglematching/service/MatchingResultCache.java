@@ -0,0 +1,151 @@
+package com.example.tripminglematching.service;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import com.example.tripminglematching.service.BoardIndex.IndexedBoard;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+// 나라와 후보 게시물 집합이 같은 매칭 요청은 같은 전체 매칭 결과를 쓴다.
+// 날짜 구간이 달라도 겹치는 게시물이 같으면 같은 키가 되고, 게시물이 수정되면 updatedAt이 바뀌어 다른 키가 된다.
+// 유저 성향이 추가/재계산/삭제되면 UserVectorStore의 버전이 바뀌어 다른 키가 된다.
+// 새로 계산할 때는 그 나라의 마지막 결과를 넘겨서 바뀐 부분만 고칠 수 있게 한다.
+// 같은 키를 동시에 요청하면 한 요청만 계산하고 나머지는 그 결과를 기다린다.
+@Component
+public class MatchingResultCache {
+
+    //해시(fingerprint)가 같아도 게시물 id와 updatedAt 목록까지 같아야 같은 키다. 해시가 겹쳐서 다른 후보 집합의 결과를 쓰지 않는다.
+    private record Key(String countryName, long userVersion, long[] boardIds, LocalDateTime[] updatedAts, long fingerprint) {
+
+        static Key of(String countryName, long userVersion, List<IndexedBoard> boards) {
+            long[] boardIds = new long[boards.size()];
+            LocalDateTime[] updatedAts = new LocalDateTime[boards.size()];
+            for (int i = 0; i < boardIds.length; i++) {
+                boardIds[i] = boards.get(i).boardId();
+                updatedAts[i] = boards.get(i).updatedAt();
+            }
+            return new Key(countryName, userVersion, boardIds, updatedAts, MatchingResultCache.fingerprint(boards));
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Key key
+                && fingerprint == key.fingerprint
+                && userVersion == key.userVersion
+                && countryName.equals(key.countryName)
+                && Arrays.equals(boardIds, key.boardIds)
+                && Arrays.equals(updatedAts, key.updatedAts);
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(fingerprint) * 31 + Long.hashCode(userVersion);
+        }
+    }
+
+    private final int maxEntries;
+    private final Map<Key, CompletableFuture<CachedMatching>> entries;
+    private final Map<String, CachedMatching> latestByCountry = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public MatchingResultCache(@Value("${matching.result-cache.max-entries:32}") int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, CompletableFuture<CachedMatching>> eldest) {
+                if (size() > MatchingResultCache.this.maxEntries) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public CachedMatching get(String countryName, List<IndexedBoard> boards, long userVersion,
+                              Function<CachedMatching, CachedMatching> matching) {
+        Key key = Key.of(countryName, userVersion, boards);
+        CompletableFuture<CachedMatching> created = new CompletableFuture<>();
+        CompletableFuture<CachedMatching> existing;
+        synchronized (entries) {
+            existing = entries.get(key);
+            if (existing == null) {
+                entries.put(key, created);
+            }
+        }
+        if (existing != null) {
+            hits.incrementAndGet();
+            return existing.join();
+        }
+        misses.incrementAndGet();
+        try {
+            CachedMatching result = matching.apply(latestByCountry.get(countryName));
+            latestByCountry.put(countryName, result);
+            created.complete(result);
+        } catch (RuntimeException e) {
+            //실패한 결과는 남기지 않아서 다음 요청이 다시 계산하게 한다.
+            synchronized (entries) {
+                entries.remove(key, created);
+            }
+            created.completeExceptionally(e);
+            throw e;
+        }
+        return created.join();
+    }
+
+    //계산을 시작하지 않고, 이미 끝난 결과가 있을 때만 돌려준다.
+    public CachedMatching peek(String countryName, List<IndexedBoard> boards, long userVersion) {
+        Key key = Key.of(countryName, userVersion, boards);
+        CompletableFuture<CachedMatching> existing;
+        synchronized (entries) {
+            existing = entries.get(key);
+        }
+        return existing != null && existing.isDone() && !existing.isCompletedExceptionally() ? existing.join() : null;
+    }
+
+    //그 나라에서 마지막으로 계산한 결과. 후보 게시물 집합이나 유저 버전은 다를 수 있다.
+    public CachedMatching latest(String countryName) {
+        return latestByCountry.get(countryName);
+    }
+
+    //같은 키를 기다린 요청도 hit로 센다.
+    public CacheReport report() {
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+        return CacheReport.of(size, maxEntries, hits.get(), misses.get(), evictions.get());
+    }
+
+    //게시물 id 오름차순 목록의 (id, updatedAt) 해시
+    private static long fingerprint(List<IndexedBoard> boards) {
+        long hash = 0x9E3779B97F4A7C15L;
+        for (IndexedBoard board : boards) {
+            hash = mix(hash ^ board.boardId());
+            if (board.updatedAt() != null) {
+                hash = mix(hash ^ board.updatedAt().toEpochSecond(ZoneOffset.UTC));
+                hash = mix(hash ^ board.updatedAt().getNano());
+            }
+        }
+        return hash;
+    }
+
+    private static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+        value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+        return value ^ (value >>> 31);
+    }
+}
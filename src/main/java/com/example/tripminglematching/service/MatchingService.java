@@ -1,27 +1,22 @@
 package com.example.tripminglematching.service;
 
-import com.example.tripminglematching.entity.Board;
 import com.example.tripminglematching.entity.User;
 import com.example.tripminglematching.entity.UserPersonality;
 import com.example.tripminglematching.exception.UserPersonalityNotFound;
-import com.example.tripminglematching.repository.BoardRepository;
 import com.example.tripminglematching.repository.UserPersonalityRepository;
 import com.example.tripminglematching.repository.UserRepository;
-import com.example.tripminglematching.utils.PairDeserializer;
-import com.example.tripminglematching.utils.PairSerializer;
-import com.example.tripminglematching.utils.SimilarityUtils;
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.example.tripminglematching.service.BoardIndex.IndexedBoard;
+import com.example.tripminglematching.utils.LongIntHashMap;
+import com.example.tripminglematching.utils.TopKHeap;
 import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
-import org.apache.commons.lang3.tuple.Pair;
-import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.Lock;
 import java.util.stream.Collectors;
 
 @Service
@@ -30,358 +25,348 @@ import java.util.stream.Collectors;
 public class MatchingService {
     private final UserPersonalityRepository userPersonalityRepository;
     private final UserRepository userRepository;
-    private final BoardRepository boardRepository;
+    private final BoardIndex boardIndex;
+    private final BoardMatchingEngine boardMatchingEngine;
+    private final BoardVectorCache boardVectorCache;
+    private final MatchingResultCache matchingResultCache;
+    private final FastPathRanker fastPathRanker;
     private final MessagePublisher messagePublisher;
-    private final RedisTemplate<String, Object> redisTemplate;
-    private static final ObjectMapper mapper = new ObjectMapper();
+    private final UserVectorStore userVectorStore;
+    private final NeighborSearch neighborSearch;
+    private final PreferencePipeline preferencePipeline;
+    private final PreferenceFormat preferenceFormat;
+    private final PreferenceIndex preferenceIndex;
+    private final ShardAssignment shardAssignment;
+    private final ShardProgress shardProgress;
     private static final String USER_PREFERENCES_KEY = "userPreferences-"; // 선호도배열
-    private static final String DELETED_BIT = "deletedBit-"; //이후 지워진게 있는지
-    private static final Integer MAX_SIZE = 50;
-    private final Integer MAX_RECOMMENDATIONS = 10;
+    //목록에 삭제된 유저가 남아 있는지. 삭제 시 목록을 바로 고치므로 이제 항상 0이다(예전에는 삭제마다 모든 유저에 1을 썼다).
+    private static final String DELETED_BIT = "deletedBit-";
+    static final Integer MAX_SIZE = 50;
+    static final Integer OVERFLOW_SIZE = 10; // 삭제 시 빈자리를 채울 예비 순위(K+1..K+M)
+    static final Integer MAX_RECOMMENDATIONS = 10;
+    private static final int PROGRESS_CHUNK = 8192; // 샤딩할 때 이만큼 계산할 때마다 쓰고 진행 상황을 남긴다
+    //유저 벡터, 선호 목록, HNSW를 고치는 구간. 레인이 달라도 이 구간만 하나씩 돌고, DB 조회와 Redis 쓰기/응답은 밖에서 동시에 돈다.
+    //묶음의 목록을 유저 행렬을 훑어서 새로 만들기 때문에 다른 묶음의 put과 겹치면 안 된다.
+    private final Object userStateLock = new Object();
 
     @PostConstruct
     void init(){
-        SimpleModule module = new SimpleModule();
-        module.addSerializer((Class<Pair<Long, Double>>) (Class<?>) Pair.class, new PairSerializer());
-        module.addDeserializer((Class<Pair<Long, Double>>) (Class<?>) Pair.class, new PairDeserializer());
-        mapper.registerModule(module);
-
         generateUserPreferences();
     }
 
+    //샤딩하면 이 인스턴스가 맡은 유저의 목록만 전체 유저와 비교해서 만들고, 그 유저의 키만 쓴다.
     public void generateUserPreferences() {
-        List<UserPersonality> users = userPersonalityRepository.findAll();
-        Map<Long, List<Double>> userVectors = new HashMap<>();
-
-        //유저의 특성을 userVectors에 저장
-        users.forEach(userPersonality
-                -> {userVectors.put(userPersonality.getId(),userPersonality.toFeatureVector());
-        });
+        //유저의 특성은 userVectorStore에 이미 올라와 있다.
+        int[] liveSlots = userVectorStore.liveSlots();
+        int[] userSlots = Arrays.stream(liveSlots).filter(this::ownsSlot).toArray();
+
+        //샤딩하지 않으면 한 번에 계산해서 같은 벡터끼리 묶는 최적화를 그대로 쓴다.
+        boolean sharded = shardAssignment.isSharded();
+        int chunk = sharded ? PROGRESS_CHUNK : Math.max(userSlots.length, 1);
+        if (sharded) {
+            shardProgress.report(shardAssignment.index(), 0, userSlots.length);
+        }
+        for (int from = 0; from < userSlots.length; from += chunk) {
+            int[] chunkSlots = Arrays.copyOfRange(userSlots, from, Math.min(from + chunk, userSlots.length));
+            TopKHeap[] preferences = neighborSearch.topK(chunkSlots, preferenceIndex.width());
 
-        users.forEach(userPersonality -> {
-            List<Double> userVector = userVectors.get(userPersonality.getId());
-            Map<Long,Double> similarityMap = new HashMap<>();
+            for (int i = 0; i < chunkSlots.length; i++) {
+                Long userPersonalityId = userVectorStore.personalityIdAt(chunkSlots[i]);
 
-            for (Map.Entry<Long, List<Double>> entry : userVectors.entrySet()) {
-                Long otherUserPersonalityId = entry.getKey();
-                if (!otherUserPersonalityId.equals(userPersonality.getId())) {
-                    double similarity = SimilarityUtils.cosineSimilarity(userVector, entry.getValue());
-                    similarityMap.put(otherUserPersonalityId, similarity);
+                try {
+                    preferenceIndex.setRow(chunkSlots[i], preferences[i].sortDescending());
+                    preferencePipeline.set(USER_PREFERENCES_KEY + userPersonalityId, encodePreferences(chunkSlots[i]), null);
+                    preferencePipeline.set(DELETED_BIT + userPersonalityId, 0, null);
+                } catch (Exception e) {
+                    e.printStackTrace();
                 }
-            }
 
-            List<Pair<Long, Double>> sortedPreferences = similarityMap.entrySet()
-                    .stream()
-                    .sorted(Map.Entry.<Long, Double>comparingByValue().reversed())
-                    .limit(MAX_SIZE)
-                    .map(entry -> Pair.of(entry.getKey(), entry.getValue()))
-                    .collect(Collectors.toList());
-
-            try {
-                ObjectMapper mapper = new ObjectMapper();
-                String json = mapper.writeValueAsString(sortedPreferences);
-                redisTemplate.opsForValue().set(USER_PREFERENCES_KEY + userPersonality.getId(), json);
-                redisTemplate.opsForValue().set(DELETED_BIT + userPersonality.getId(), 0);
-            } catch (Exception e) {
-                e.printStackTrace();
             }
+            preferencePipeline.flush();
+            if (sharded) {
+                shardProgress.report(shardAssignment.index(), from + chunkSlots.length, userSlots.length);
+            }
+        }
+        if (sharded) {
+            shardProgress.logSummary();
+        }
+    }
 
-        });
+    private boolean ownsSlot(int slot) {
+        return shardAssignment.owns(userVectorStore.personalityIdAt(slot));
+    }
+
+    //파이프라인에 넣은 쓰기를 바로 보내고, 하나라도 실패하면 예외를 던진다.
+    private void awaitWrites(List<CompletableFuture<Void>> writes) {
+        preferencePipeline.flush();
+        CompletableFuture.allOf(writes.toArray(new CompletableFuture[0])).join();
     }
 
     //유저추가
     public void addUserPersonality(Long userPersonalityId, String messageId) {
-        UserPersonality newUserPersonality;
+        applyUserEvents(List.of(new UserEvent(userPersonalityId, messageId, false)));
+    }
+
+    //재계산
+    public void recalculateUserPersonality(Long userPersonalityId, String messageId){
+        applyUserEvents(List.of(new UserEvent(userPersonalityId, messageId, true)));
+    }
+
+    //유저 추가/재계산 묶음을 한 번에 반영한다. 같은 유저의 이벤트는 한 번만 읽어서 넣고, 응답은 메시지마다 보낸다.
+    public void applyUserEvents(List<UserEvent> events) {
+        Set<Long> ids = new LinkedHashSet<>();
+        for (UserEvent event : events) {
+            ids.add(event.userPersonalityId());
+        }
+        Map<Long, UserPersonality> loaded = new HashMap<>();
         try {
-            newUserPersonality = userPersonalityRepository.findById(userPersonalityId)
-                    .orElseThrow(() -> new UserPersonalityNotFound());
+            for (UserPersonality userPersonality : userPersonalityRepository.findAllById(ids)) {
+                loaded.put(userPersonality.getId(), userPersonality);
+            }
         }catch (Exception e){
-            messagePublisher.userPersonalityResPublish(userPersonalityId, messageId, MessagePublisher.TOPIC_ADD_USER_RES_PUBLISH, MessagePublisher.FAIL_TO_ADD_USER_PERSONALITY);
+            events.forEach(event -> publishResult(event, false));
             e.printStackTrace();
             return;
         }
 
-        List<Double> newUserVector = newUserPersonality.toFeatureVector();
-        List<UserPersonality>userPersonalityList = userPersonalityRepository.findAll();
-        List<Pair<Long, Double>> newUserPreferences = userPersonalityList.stream()
-            .filter(userPersonality -> !(userPersonality.getId().equals(newUserPersonality.getId())))
-            .map(userPersonality -> {
-                List<Pair<Long, Double>> existingUserPreferences = new ArrayList<>();
-                try {
-                    String json = (String)redisTemplate.opsForValue()
-                        .get(USER_PREFERENCES_KEY + userPersonality.getId());
-                    existingUserPreferences = mapper.readValue(json, new TypeReference<List<Pair<Long, Double>>>() {});
+        for (UserEvent event : events) {
+            if (!loaded.containsKey(event.userPersonalityId())) {
+                publishResult(event, false);
+            }
+        }
+        List<UserEvent> applied = new ArrayList<>();
+        List<CompletableFuture<Void>> writes = new ArrayList<>();
+        try{
+            synchronized (userStateLock) {
+                int[] slots = new int[loaded.size()];
+                int count = 0;
+                for (Long id : ids) {
+                    UserPersonality userPersonality = loaded.get(id);
+                    if (userPersonality != null) {
+                        slots[count] = userVectorStore.put(userPersonality);
+                        neighborSearch.upsert(slots[count++]);
+                    }
                 }
-                catch (Exception e){
-                    messagePublisher.userPersonalityResPublish(userPersonalityId, messageId, MessagePublisher.TOPIC_ADD_USER_RES_PUBLISH, MessagePublisher.FAIL_TO_ADD_USER_PERSONALITY);
-                    e.printStackTrace();
+                for (UserEvent event : events) {
+                    if (!loaded.containsKey(event.userPersonalityId())) {
+                        continue;
+                    }
+                    applied.add(event);
+                    if (event.recalculate()) {
+                        boardVectorCache.invalidateAuthor(userVectorStore.userIdAt(userVectorStore.slotOf(event.userPersonalityId())));
+                    }
                 }
-
-                List<Double> userVector = userPersonality.toFeatureVector();
-                double similarity = SimilarityUtils.cosineSimilarity(newUserVector, userVector);
-                existingUserPreferences.add(Pair.of(newUserPersonality.getId(), similarity));
-                existingUserPreferences = existingUserPreferences.stream()
-                    .sorted((p1, p2) -> Double.compare(p2.getRight(), p1.getRight()))
-                    .limit(MAX_SIZE)
-                    .collect(Collectors.toList());
-
-                try{
-                    String json = mapper.writeValueAsString(existingUserPreferences);
-                    redisTemplate.opsForValue().set(USER_PREFERENCES_KEY+userPersonality.getId(), json);
-                } catch (Exception e){
-                    messagePublisher.userPersonalityResPublish(userPersonalityId, messageId, MessagePublisher.TOPIC_ADD_USER_RES_PUBLISH, MessagePublisher.FAIL_TO_ADD_USER_PERSONALITY);
-                    e.printStackTrace();
+                if (!applied.isEmpty()) {
+                    Map<Integer, BitSet> changedSlots = reinsert(Arrays.copyOf(slots, count));
+
+                    //쓰기마다 그 목록을 바꾼 요청들의 messageId를 남긴다. (같은 유저의 요청이 여럿이면 모두)
+                    Map<Long, String> messageIds = applied.stream().collect(Collectors.groupingBy(UserEvent::userPersonalityId,
+                        Collectors.mapping(UserEvent::messageId, Collectors.joining(","))));
+                    for (Map.Entry<Integer, BitSet> changedSlot : changedSlots.entrySet()) {
+                        String changedBy = changedSlot.getValue().stream()
+                            .mapToObj(i -> messageIds.get(userVectorStore.personalityIdAt(slots[i])))
+                            .collect(Collectors.joining(","));
+                        writes.add(preferencePipeline.set(USER_PREFERENCES_KEY + userVectorStore.personalityIdAt(changedSlot.getKey()),
+                            encodePreferences(changedSlot.getKey()), changedBy));
+                    }
+                    for (int i = 0; i < count; i++) {
+                        if (!ownsSlot(slots[i])) {
+                            continue;
+                        }
+                        Long userPersonalityId = userVectorStore.personalityIdAt(slots[i]);
+                        writes.add(preferencePipeline.set(USER_PREFERENCES_KEY + userPersonalityId, encodePreferences(slots[i]), messageIds.get(userPersonalityId)));
+                        writes.add(preferencePipeline.set(DELETED_BIT + userPersonalityId, 0, messageIds.get(userPersonalityId)));
+                    }
                 }
-
-                return Pair.of(userPersonality.getId(), similarity);
-        })
-            .sorted((p1, p2) -> Double.compare(p2.getRight(), p1.getRight()))
-            .limit(MAX_SIZE)
-            .collect(Collectors.toList());
-
-        try{
-            String json = mapper.writeValueAsString(newUserPreferences);
-
-            redisTemplate.opsForValue().set(USER_PREFERENCES_KEY + newUserPersonality.getId(), json);
-            redisTemplate.opsForValue().set(DELETED_BIT + newUserPersonality.getId(), 0);
-            messagePublisher.userPersonalityResPublish(userPersonalityId,messageId, MessagePublisher.TOPIC_ADD_USER_RES_PUBLISH,MessagePublisher.ADD_USER_PERSONALITY_SUCCESS);
+            }
+            if (applied.isEmpty()) {
+                return;
+            }
+            awaitWrites(writes);
+            applied.forEach(event -> publishResult(event, true));
         }
         catch (Exception e){
-            messagePublisher.userPersonalityResPublish(userPersonalityId, messageId, MessagePublisher.TOPIC_ADD_USER_RES_PUBLISH, MessagePublisher.FAIL_TO_ADD_USER_PERSONALITY);
+            applied.forEach(event -> publishResult(event, false));
             e.printStackTrace();
         }
-
     }
 
-
-    //재계산
-    public void recalculateUserPersonality(Long userPersonalityId, String messageId){
-        UserPersonality nowUserPersonality;
-        try {
-            nowUserPersonality = userPersonalityRepository.findById(userPersonalityId)
-                .orElseThrow(() -> new UserPersonalityNotFound());
-        }catch (Exception e){
-            messagePublisher.userPersonalityResPublish(userPersonalityId, messageId, MessagePublisher.TOPIC_RE_CALCULATE_USER_RES_PUBLISH, MessagePublisher.FAIL_TO_RE_CALCULATE_USER_PERSONALITY);
-            e.printStackTrace();
+    //샤딩하면 그 유저를 맡은 인스턴스만 응답한다.
+    private void publishResult(UserEvent event, boolean success) {
+        if (!shardAssignment.owns(event.userPersonalityId())) {
             return;
         }
-        List<Double> nowUserVector = nowUserPersonality.toFeatureVector();
-        List<UserPersonality>userPersonalityList = userPersonalityRepository.findAll();
-
-        List<Pair<Long, Double>> nowUserPreferences = userPersonalityList.stream()
-            .filter(userPersonality -> !(userPersonality.getId().equals(nowUserPersonality.getId())))
-            .map(userPersonality -> {
-                List<Double> userVector = userPersonality.toFeatureVector();
-                double similarity = SimilarityUtils.cosineSimilarity(nowUserVector, userVector);
-                return Pair.of(userPersonality.getId(), similarity);
-            })
-            .sorted((p1, p2) -> Double.compare(p2.getRight(), p1.getRight()))
-            .limit(MAX_SIZE)
-            .collect(Collectors.toList());
-
-        try{
-            String json = mapper.writeValueAsString(nowUserPreferences);
+        messagePublisher.userPersonalityResPublish(event.userPersonalityId(), event.messageId(), event.topic(), event.result(success));
+    }
 
-            redisTemplate.opsForValue().set(USER_PREFERENCES_KEY + nowUserPersonality.getId(), json);
-            redisTemplate.opsForValue().set(DELETED_BIT + nowUserPersonality.getId(), 0);
+    //특성이 바뀐 슬롯들(추가/재계산)의 목록과 다른 유저들의 목록을 함께 고친다.
+    //원래 들어 있던 목록에서 모두 뺀 뒤, 유저 행렬을 한 번 훑으면서 유저마다 묶음의 모든 슬롯과 유사도를 계산해
+    //입장 기준을 넘는 목록에만 다시 정렬 삽입한다. 묶음에 든 슬롯의 목록은 새로 만든다.
+    //샤딩하면 이 인스턴스가 맡은 유저의 목록만 만들고 고친다.
+    //보이는 상위 K개가 바뀐 유저의 슬롯 -> 그 목록을 바꾼 묶음 슬롯들의 위치(slots의 인덱스)를 반환한다. (묶음에 든 슬롯은 빼고)
+    private Map<Integer, BitSet> reinsert(int[] slots) {
+        Map<Integer, BitSet> changed = new TreeMap<>();
+        BitSet batched = new BitSet(userVectorStore.slotLimit());
+        //묶음 슬롯이 빠진 목록 -> 뺀 묶음 슬롯들의 위치. 예비 순위까지 다 써서 다시 계산하면 그 슬롯들이 바꾼 것이다.
+        Map<Integer, BitSet> removedBy = new HashMap<>();
+        for (int slot : slots) {
+            batched.set(slot);
+        }
+        for (int i = 0; i < slots.length; i++) {
+            for (int userSlot : preferenceIndex.referrersOf(slots[i])) {
+                removedBy.computeIfAbsent(userSlot, k -> new BitSet()).set(i);
+                if (preferenceIndex.isVisible(preferenceIndex.remove(userSlot, slots[i]))) {
+                    changed.computeIfAbsent(userSlot, k -> new BitSet()).set(i);
+                }
+            }
+        }
 
-            messagePublisher.userPersonalityResPublish(userPersonalityId, messageId, MessagePublisher.TOPIC_RE_CALCULATE_USER_RES_PUBLISH, MessagePublisher.RE_CALCULATE_USER_PERSONALITY_SUCCESS);
+        TopKHeap[] preferences = new TopKHeap[slots.length];
+        long[] ids = new long[slots.length];
+        boolean anyOwned = false;
+        for (int i = 0; i < slots.length; i++) {
+            ids[i] = userVectorStore.personalityIdAt(slots[i]);
+            if (ownsSlot(slots[i])) {
+                preferences[i] = new TopKHeap(preferenceIndex.width());
+                anyOwned = true;
+            }
         }
-        catch (Exception e){
-            messagePublisher.userPersonalityResPublish(userPersonalityId, messageId, MessagePublisher.TOPIC_RE_CALCULATE_USER_RES_PUBLISH, MessagePublisher.FAIL_TO_RE_CALCULATE_USER_PERSONALITY);
-            e.printStackTrace();
+        for (int userSlot = 0; userSlot < userVectorStore.slotLimit(); userSlot++) {
+            if (!userVectorStore.isLive(userSlot)) {
+                continue;
+            }
+            long userPersonalityId = userVectorStore.personalityIdAt(userSlot);
+            boolean insertable = !batched.get(userSlot) && shardAssignment.owns(userPersonalityId);
+            if (!insertable && !anyOwned) {
+                continue;
+            }
+            for (int i = 0; i < slots.length; i++) {
+                if (slots[i] == userSlot || (!insertable && preferences[i] == null)) {
+                    continue;
+                }
+                double similarity = userVectorStore.similarity(slots[i], userSlot);
+                if (preferences[i] != null) {
+                    preferences[i].offer(similarity, userSlot, userPersonalityId);
+                }
+                if (insertable && preferenceIndex.isVisible(preferenceIndex.insert(userSlot, slots[i], ids[i], similarity))) {
+                    changed.computeIfAbsent(userSlot, k -> new BitSet()).set(i);
+                }
+            }
+        }
+        for (int i = 0; i < slots.length; i++) {
+            if (preferences[i] != null) {
+                preferenceIndex.setRow(slots[i], preferences[i].sortDescending());
+            }
         }
 
+        //멀어져서 빠진 목록 중 예비 순위까지 다 쓴 목록만 다시 계산한다.
+        for (Map.Entry<Integer, BitSet> removed : removedBy.entrySet()) {
+            int userSlot = removed.getKey();
+            if (!batched.get(userSlot) && preferenceIndex.needsRebuild(userSlot)) {
+                preferenceIndex.setRow(userSlot, neighborSearch.topK(userSlot, preferenceIndex.width()).sortDescending());
+                changed.computeIfAbsent(userSlot, k -> new BitSet()).or(removed.getValue());
+            }
+        }
+        changed.keySet().removeIf(batched::get);
+        return changed;
     }
 
+    //메모리에 있는 선호도 배열을 Redis 저장 형식으로 만든다.
+    private byte[] encodePreferences(int userSlot) {
+        int size = preferenceIndex.visibleSize(userSlot);
+        long[] ids = new long[size];
+        double[] similarities = new double[size];
+        for (int rank = 0; rank < size; rank++) {
+            ids[rank] = userVectorStore.personalityIdAt(preferenceIndex.neighborAt(userSlot, rank));
+            similarities[rank] = preferenceIndex.similarityAt(userSlot, rank);
+        }
+        return preferenceFormat.encode(ids, similarities, size);
+    }
 
 
     //유저 삭제
+    //삭제된 유저를 목록에 갖고 있던 유저들만 고친다. 빠진 자리는 예비 순위로 채우고, 예비까지 다 쓴 목록만 다시 계산한다.
     public void deleteUserPersonality(Long userId, String messageId){
-        redisTemplate.delete(USER_PREFERENCES_KEY + userId);
-        List<UserPersonality>userPersonalityList = userPersonalityRepository.findAll();
-        userPersonalityList.forEach(userPersonality ->
-            redisTemplate.opsForValue().set(DELETED_BIT+userPersonality.getId(),1)
-        );
-        messagePublisher.userPersonalityResPublish(userId,messageId,MessagePublisher.TOPIC_DELETE_USER_RES_PUBLISH, MessagePublisher.DELETE_USER_PERSONALITY_SUCCESS);
-    }
-
-    final double INF = 100.0;
-
-    public void matchUserAndBoard(Long userId, String messageId, String countryName, LocalDate startDate, LocalDate endDate){
-
-        //조건으로 게시물 조회
-        List<Board> boards = boardRepository.findBoardsByCountryNameAndDateRange(countryName,startDate,endDate);
-
-        UserPersonality myUserPersonality = userPersonalityRepository.findByUserId(userId);
-        Long userPersonalityId = myUserPersonality.getId();
-
-        //게시물의 작성자의 성향을 조회하여 저장
-        Map<Long, Pair<Long, List<Double>>> boardPreferVector = boards.stream()
-            .collect(Collectors.toMap(
-                Board::getId,
-                board -> Pair.of(board.getUser().getId(), calculateBoardVector(board, messageId))
-            ));
-
-        //모든유저 조회
-        List<UserPersonality> userPersonalities = userPersonalityRepository.findAll();
-        Map<Long, Pair<Long, List<Double>>> userPreferVector = userPersonalities.stream()
-            .collect(Collectors.toMap(
-                userPersonality -> userPersonality.getId(),
-                userPersonality -> Pair.of(userPersonality.getUser().getId(), userPersonality.toFeatureVector())
-            ));
-
-        //유저의 선호도 배열 제작
-        Map<Long, Queue<Long>> userPreferQueue = userPersonalities.stream()
-            .collect(Collectors.toMap(
-                userPersonality -> userPersonality.getId(),
-                userPersonality -> {
-                    Long nowUserId = userPersonality.getId();
-                    List<Double> userVector = userPreferVector.get(nowUserId).getRight();
-
-                    // 미리 유사도를 계산해서 저장
-                    Map<Long, Double> similarityMap = boardPreferVector.entrySet().stream()
-                        .collect(Collectors.toMap(
-                            Map.Entry::getKey,
-                            entry -> {
-                                Long boardAuthor = entry.getValue().getLeft();
-                                //만약 유저와 작성자가 동일하다면 선호도를 -INF로 설정하여 선호도를 맨 뒤로 미룬다.
-                                return boardAuthor.equals(nowUserId) ? -INF :
-                                    SimilarityUtils.cosineSimilarity(userVector, entry.getValue().getRight());
-                            }
-                        ));
-
-                    return similarityMap.entrySet().stream()
-                        .sorted(Map.Entry.<Long, Double>comparingByValue().reversed())
-                        .map(Map.Entry::getKey)
-                        .collect(Collectors.toCollection(LinkedList::new));
-                }
-            ));
-
-        // 게시물의 선호도 배열 생성
-        Map<Long, Map<Long, Integer>> boardPreferList = boards.stream()
-            .collect(Collectors.toMap(
-                Board::getId,
-                board -> {
-                    List<Double> boardVector = boardPreferVector.get(board.getId()).getRight();
-                    Long boardAuthor = board.getUser().getId();
-
-                    // 미리 유사도를 계산해서 저장
-                    Map<Long, Double> similarityMap = userPreferVector.entrySet().stream()
-                        .collect(Collectors.toMap(
-                            Map.Entry::getKey,
-                            entry -> {
-                                Long nowUserId = entry.getKey();
-                                //만약 유저와 작성자가 동일하다면 선호도를 -INF로 설정하여 선호도를 맨 뒤로 미룬다.
-                                return boardAuthor.equals(nowUserId) ? -INF :
-                                    SimilarityUtils.cosineSimilarity(boardVector, entry.getValue().getRight());
-                            }
-                        ));
-
-                    List<Long> sortedUsers = similarityMap.entrySet().stream()
-                        .sorted(Map.Entry.<Long, Double>comparingByValue().reversed())
-                        .map(Map.Entry::getKey)
-                        .collect(Collectors.toList());
-
-                    // 유저 ID를 키로, 인덱스를 값으로 하는 맵 생성
-                    Map<Long, Integer> userIndexMap = new HashMap<>();
-                    for (int i = 0; i < sortedUsers.size(); i++) {
-                        userIndexMap.put(sortedUsers.get(i), i);
-                    }
-                    return userIndexMap;
+        //샤딩하면 그 유저를 맡은 인스턴스만 그 유저의 키를 지우고 응답한다. 다른 유저의 목록은 각자 맡은 인스턴스가 고친다.
+        boolean owned = shardAssignment.owns(userId);
+        List<CompletableFuture<Void>> writes = new ArrayList<>();
+        if (owned) {
+            writes.add(preferencePipeline.delete(USER_PREFERENCES_KEY + userId, messageId));
+        }
+        try {
+            synchronized (userStateLock) {
+                if (userVectorStore.contains(userId)) {
+                    boardVectorCache.invalidateAuthor(userVectorStore.userIdAt(userVectorStore.slotOf(userId)));
                 }
-            ));
-
-
-        // 매칭과 프로포즈 초기화
-        Map<Long, List<Long>> userMatches = new HashMap<>();
-        Map<Long, PriorityQueue<Map.Entry<Integer, Long>>> boardMatches = new HashMap<>(); // boardID -> PriorityQueue of (preferenceIndex, userID)
-        Queue<Long> freeUsers = new LinkedList<>(userPersonalities.stream().map(UserPersonality::getId).collect(Collectors.toList()));
-
-        int numUsers = userPersonalities.size();
-        int numBoards = boards.size();
-        int userMatchingCount = Math.min(MAX_RECOMMENDATIONS, numBoards);
-        if(numBoards==0)numBoards++;
-        int maxMatchesPerBoard = (numUsers * userMatchingCount)%numBoards == 0
-            ? (numUsers * userMatchingCount)/numBoards : (numUsers * userMatchingCount)/numBoards + 1;
-
-
-        // 게일-섀플리 알고리즘
-        while (!freeUsers.isEmpty()) {
-            Long freeUserId = freeUsers.poll();
-            Queue<Long> userPreferences = userPreferQueue.getOrDefault(freeUserId, new LinkedList<>());
-
-            userMatches.putIfAbsent(freeUserId, new ArrayList<>());
-
-            while (!userPreferences.isEmpty() && userMatches.get(freeUserId).size() < userMatchingCount) {
-                Long preferredBoardId = userPreferences.poll();
-
-                // 유저의 매칭목록을 가져옴 (없으면 새로운 목록 생성)
-                PriorityQueue<Map.Entry<Integer, Long>> currentMatches = boardMatches
-                    .computeIfAbsent(preferredBoardId, k -> new PriorityQueue<>((entry1, entry2) -> Integer.compare(entry2.getKey(), entry1.getKey())));
-
-                // 유저의 현재 게시물에 대한 선호도 인덱스 가져오기
-                int userPreferenceIndex = boardPreferList.get(preferredBoardId).get(freeUserId);
-
-                if (currentMatches.size() < maxMatchesPerBoard) {
-                    // 보드에 공간이 있으면 유저 매칭
-                    currentMatches.add(new AbstractMap.SimpleEntry<>(userPreferenceIndex, freeUserId));
-                    boardMatches.put(preferredBoardId, currentMatches);
-                    userMatches.get(freeUserId).add(preferredBoardId);
-                    break;
-                } else {
-                    // 보드가 가득 찬 경우, 현재 매칭된 유저 중 덜 선호되는 유저와 비교
-                    Map.Entry<Integer, Long> leastPreferredUser = currentMatches.peek();
-
-                    if (userPreferenceIndex < leastPreferredUser.getKey()) {
-                        // 새로운 유저가 더 선호되는 경우, 덜 선호되는 유저 교체
-                        currentMatches.poll(); // 덜 선호되는 유저 제거
-                        currentMatches.add(new AbstractMap.SimpleEntry<>(userPreferenceIndex, freeUserId));
-                        boardMatches.put(preferredBoardId, currentMatches);
-                        userMatches.get(leastPreferredUser.getValue()).remove(preferredBoardId);
-                        userMatches.get(freeUserId).add(preferredBoardId);
-                        freeUsers.add(leastPreferredUser.getValue()); // 교체된 유저는 다시 자유 유저가 됨
-                        break;
+                int deletedSlot = userVectorStore.remove(userId);
+                if (deletedSlot >= 0) {
+                    neighborSearch.remove(deletedSlot);
+                    preferenceIndex.clearRow(deletedSlot);
+                    for (int userSlot : preferenceIndex.referrersOf(deletedSlot)) {
+                        int removedRank = preferenceIndex.remove(userSlot, deletedSlot);
+                        if (preferenceIndex.needsRebuild(userSlot)) {
+                            preferenceIndex.setRow(userSlot, neighborSearch.topK(userSlot, preferenceIndex.width()).sortDescending());
+                        }
+                        else if (!preferenceIndex.isVisible(removedRank)) {
+                            continue;
+                        }
+                        Long userPersonalityId = userVectorStore.personalityIdAt(userSlot);
+                        writes.add(preferencePipeline.set(USER_PREFERENCES_KEY + userPersonalityId, encodePreferences(userSlot), messageId));
+                        //고친 목록에는 삭제된 유저가 없으므로 0이다. 예전 배포가 남긴 1도 여기서 지워진다.
+                        writes.add(preferencePipeline.set(DELETED_BIT + userPersonalityId, 0, messageId));
                     }
                 }
-
             }
-
-            if (userMatches.get(freeUserId).size() < userMatchingCount && !userPreferences.isEmpty()) {
-                freeUsers.add(freeUserId);
+            awaitWrites(writes);
+            if (owned) {
+                messagePublisher.userPersonalityResPublish(userId,messageId,MessagePublisher.TOPIC_DELETE_USER_RES_PUBLISH, MessagePublisher.DELETE_USER_PERSONALITY_SUCCESS);
             }
+        } catch (Exception e) {
+            if (owned) {
+                messagePublisher.userPersonalityResPublish(userId,messageId,MessagePublisher.TOPIC_DELETE_USER_RES_PUBLISH, MessagePublisher.FAIL_TO_DELETE_USER_PERSONALITY);
+            }
+            e.printStackTrace();
         }
+    }
 
-        for (Map.Entry<Long, List<Long>> entry : userMatches.entrySet()) {
-            Long userId2 = entry.getKey();
-            List<Long> boardIds = entry.getValue();
-        }
-
-        for (Map.Entry<Long, List<Long>> entry : userMatches.entrySet()) {
-            Long userId2 = entry.getKey();
-            List<Long> boardIds = entry.getValue();
+    //fastPath면 전체 안정 매칭 대신 요청한 유저만 후보 게시물과 비교한 추정 목록을 보낸다.
+    //계산하는 동안 유저 벡터가 바뀌지 않도록 읽기 락을 잡는다. 성향 이벤트는 put/remove 하는 동안만 기다리게 된다.
+    public void matchUserAndBoard(Long userId, String messageId, String countryName, LocalDate startDate, LocalDate endDate, boolean fastPath){
+        List<Long> matched;
+        Lock readLock = userVectorStore.readLock();
+        readLock.lock();
+        try {
+            int myUserSlot = userVectorStore.slotOfUser(userId);
+            //샤딩하면 그 유저를 맡은 인스턴스만 응답한다. 성향이 없는 유저는 유저 id로 정한다.
+            //모든 샤드가 요청을 받으므로(pub/sub, 또는 샤드별 consumer group) 맡지 않은 요청은 답하지 않고 넘긴다.
+            if (!shardAssignment.owns(myUserSlot == LongIntHashMap.MISSING ? userId : userVectorStore.personalityIdAt(myUserSlot))) {
+                return;
+            }
+            matched = myUserSlot == LongIntHashMap.MISSING ? null : matchedBoards(myUserSlot, countryName, startDate, endDate, fastPath);
+        } catch (Exception e) {
+            matched = null;
+            e.printStackTrace();
+        } finally {
+            readLock.unlock();
         }
 
         //userId를 통해 특정 유저의 게시물선호도배열 publish
-        messagePublisher.matchingResPublish(userMatches.get(userPersonalityId), messageId, MessagePublisher.TOPIC_MATCHING ,MessagePublisher.MATCHING_SUCCESS);
-    }
-
-    private List<Double> calculateBoardVector (Board board, String messageId){
-        Optional<UserPersonality> userPersonality = userPersonalityRepository.findByUser(board.getUser());
-        if (!userPersonality.isPresent()) {
+        if (matched == null) {
             messagePublisher.matchingResPublish(null, messageId, MessagePublisher.TOPIC_MATCHING ,MessagePublisher.FAIL_TO_MATCHING);
-            throw new UserPersonalityNotFound();
+            return;
         }
-        return boardPrefer(userPersonality.get().toFeatureVector(), board);
+        messagePublisher.matchingResPublish(matched, messageId, MessagePublisher.TOPIC_MATCHING ,MessagePublisher.MATCHING_SUCCESS);
     }
 
-    private List<Double> boardPrefer(List<Double> userVector, Board board){
-        userVector.set(0, userVector.get(0) + (board.getPreferGender()-3.0) * 24.0);
-        userVector.set(4, userVector.get(4) + (board.getPreferSmoking()-3.0) * 16.0);
-        userVector.set(9,  userVector.get(9) + (board.getPreferPhoto()-3.0) * 9.0);
-        userVector.set(5,  userVector.get(5) + (board.getPreferBudget()-3.0) * 10.0);
-        userVector.set(14,  userVector.get(14) + (board.getPreferDrink()-3.0) * 24.0);
-        return userVector;
+    private List<Long> matchedBoards(int myUserSlot, String countryName, LocalDate startDate, LocalDate endDate, boolean fastPath) {
+        //후보 게시물이 같은 요청은 한 번 계산한 전체 매칭 결과를 같이 쓴다.
+        List<IndexedBoard> candidates = boardIndex.find(countryName, startDate, endDate);
+        if (fastPath) {
+            return fastPathRanker.rank(myUserSlot, countryName, candidates, userVectorStore.version());
+        }
+        CachedMatching matching = matchingResultCache.get(countryName, candidates, userVectorStore.version(),
+            previous -> boardMatchingEngine.match(candidates, previous));
+        return matching.boardsOf(myUserSlot);
     }
 
 }
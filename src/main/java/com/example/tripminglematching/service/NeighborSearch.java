@@ -0,0 +1,153 @@
+package com.example.tripminglematching.service;
+
+import java.util.Random;
+
+import com.example.tripminglematching.utils.HnswIndex;
+import com.example.tripminglematching.utils.TopKHeap;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+// 유사 유저 상위 K 검색. recall-target이 1.0이면 전수 비교, 그보다 낮으면 HNSW 근사 검색을 쓴다.
+// 근사 모드는 기동 시 표본 질의로 recall을 재면서 목표를 만족하는 efSearch를 고른다.
+@Slf4j
+@Component
+public class NeighborSearch {
+
+    private static final int MAX_EF_SEARCH = 4096;
+
+    private final UserVectorStore userVectorStore;
+    private final PreferenceBuilder preferenceBuilder;
+    private final ProfileInterner profileInterner;
+    private final double minInterningRatio;
+    private final double recallTarget;
+    private final int recallSampleSize;
+    private final HnswIndex index;
+    private int efSearch;
+    private RecallReport lastReport;
+
+    public NeighborSearch(UserVectorStore userVectorStore, PreferenceBuilder preferenceBuilder, ProfileInterner profileInterner,
+                          @Value("${matching.interning.min-ratio:1.5}") double minInterningRatio,
+                          @Value("${matching.similarity.recall-target:1.0}") double recallTarget,
+                          @Value("${matching.similarity.recall-sample-size:200}") int recallSampleSize,
+                          @Value("${matching.similarity.hnsw.m:16}") int m,
+                          @Value("${matching.similarity.hnsw.ef-construction:100}") int efConstruction,
+                          @Value("${matching.similarity.hnsw.ef-search:64}") int efSearch) {
+        this.userVectorStore = userVectorStore;
+        this.preferenceBuilder = preferenceBuilder;
+        this.profileInterner = profileInterner;
+        this.minInterningRatio = minInterningRatio;
+        this.recallTarget = recallTarget;
+        this.recallSampleSize = recallSampleSize;
+        this.index = recallTarget < 1.0 ? new HnswIndex(m, efConstruction) : null;
+        this.efSearch = efSearch;
+    }
+
+    @PostConstruct
+    void init() {
+        if (!isApproximate()) {
+            return;
+        }
+        for (int slot : userVectorStore.liveSlots()) {
+            upsert(slot);
+        }
+        calibrate(MatchingService.MAX_SIZE);
+    }
+
+    public boolean isApproximate() {
+        return index != null;
+    }
+
+    public TopKHeap[] topK(int[] querySlots, int k) {
+        //전체 유저를 한 번에 계산할 때는 같은 벡터끼리 묶어서 프로필 수만큼만 비교한다.
+        if (!isApproximate() && querySlots.length == userVectorStore.size()) {
+            ProfileClasses classes = profileInterner.intern(querySlots);
+            log.info("profile interning : {}", classes.report());
+            if (classes.report().compressionRatio() >= minInterningRatio) {
+                return preferenceBuilder.buildRows(classes, k);
+            }
+        }
+        if (!isApproximate()) {
+            return preferenceBuilder.buildRows(querySlots, k);
+        }
+        return preferenceBuilder.mapRows(querySlots.length, i -> approximate(querySlots[i], k, efSearch));
+    }
+
+    public TopKHeap topK(int querySlot, int k) {
+        return isApproximate() ? approximate(querySlot, k, efSearch) : preferenceBuilder.buildRow(querySlot, k);
+    }
+
+    //UserVectorStore에 넣거나 갱신한 직후 호출한다.
+    public void upsert(int slot) {
+        if (isApproximate()) {
+            index.insert(slot, userVectorStore.personalityIdAt(slot), userVectorStore.vectorAt(slot));
+        }
+    }
+
+    public void remove(int slot) {
+        if (isApproximate() && slot >= 0) {
+            index.remove(slot);
+        }
+    }
+
+    //표본 유저에 대해 근사 결과가 전수 비교 상위 k개를 얼마나 맞췄는지 측정한다. 동점은 맞춘 것으로 본다.
+    public RecallReport recallReport(int k, int ef) {
+        int[] liveSlots = userVectorStore.liveSlots();
+        int sampleSize = Math.min(recallSampleSize, liveSlots.length);
+        Random random = new Random(7);
+        long exactNanos = 0;
+        long approximateNanos = 0;
+        long hits = 0;
+        long total = 0;
+        for (int n = 0; n < sampleSize; n++) {
+            int slot = liveSlots[random.nextInt(liveSlots.length)];
+
+            long start = System.nanoTime();
+            TopKHeap exact = preferenceBuilder.buildRow(slot, k);
+            exactNanos += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            TopKHeap approximate = approximate(slot, k, ef);
+            approximateNanos += System.nanoTime() - start;
+
+            double threshold = exact.isFull() ? exact.threshold() : Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < approximate.size(); i++) {
+                if (Double.compare(approximate.similarityAt(i), threshold) >= 0) {
+                    hits++;
+                }
+            }
+            total += exact.size();
+        }
+        double recall = total == 0 ? 1.0 : Math.min(1.0, (double) hits / total);
+        return new RecallReport(sampleSize, k, ef, recall,
+            sampleSize == 0 ? 0 : exactNanos / 1e6 / sampleSize,
+            sampleSize == 0 ? 0 : approximateNanos / 1e6 / sampleSize);
+    }
+
+    //기동 시 efSearch를 고를 때 잰 마지막 보고서. 전수 비교 모드면 재지 않으므로 null
+    public RecallReport lastReport() {
+        return lastReport;
+    }
+
+    private void calibrate(int k) {
+        int ef = Math.max(efSearch, k);
+        RecallReport report = recallReport(k, ef);
+        while (report.recall() < recallTarget && ef < MAX_EF_SEARCH) {
+            ef = Math.min(ef * 2, MAX_EF_SEARCH);
+            report = recallReport(k, ef);
+        }
+        efSearch = ef;
+        lastReport = report;
+        log.info("hnsw recall report : {}", report);
+        if (report.recall() < recallTarget) {
+            log.warn("recall target {} not reached (efSearch={}), results may miss neighbours", recallTarget, ef);
+        }
+    }
+
+    private TopKHeap approximate(int slot, int k, int ef) {
+        return index.search(userVectorStore.matrix(), UserVectorStore.offset(slot), k, ef, slot);
+    }
+}
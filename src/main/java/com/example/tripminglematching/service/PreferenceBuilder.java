@@ -0,0 +1,186 @@
+package com.example.tripminglematching.service;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+
+import com.example.tripminglematching.utils.FeatureVector;
+import com.example.tripminglematching.utils.PackedVectors;
+import com.example.tripminglematching.utils.TopKHeap;
+
+import jakarta.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+// 유저 간 유사도 상위 K 목록을 fork-join으로 병렬 계산한다.
+// 행(질의 유저)을 타일로 나눠 작업을 쪼개고, 각 작업은 열(비교 대상)도 타일 단위로 훑어 캐시 안에서 계산한다.
+@Component
+public class PreferenceBuilder {
+
+    //두 유저 슬롯의 유사도. 저장소에서는 UserVectorStore.similarity
+    interface SlotSimilarity {
+        double between(int slotA, int slotB);
+    }
+
+    static final int ROW_TILE = 64;
+    static final int COLUMN_TILE = 256;
+
+    private final UserVectorStore userVectorStore;
+    private final ForkJoinPool pool;
+
+    public PreferenceBuilder(UserVectorStore userVectorStore,
+                             @Value("${matching.preference.parallelism:0}") int parallelism) {
+        this.userVectorStore = userVectorStore;
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        pool.shutdown();
+    }
+
+    //querySlots의 각 유저에 대해 자기 자신을 제외한 전체 유저 중 상위 k개를 구한다. 결과는 querySlots 순서와 같다.
+    public TopKHeap[] buildRows(int[] querySlots, int k) {
+        return topK(pack(querySlots), pack(userVectorStore.liveSlots()), k, pool);
+    }
+
+    //유저 한 명의 목록만 필요할 때는 복사 없이 저장소 행렬을 바로 훑는다.
+    public TopKHeap buildRow(int querySlot, int k) {
+        TopKHeap heap = new TopKHeap(k);
+        for (int slot = 0; slot < userVectorStore.slotLimit(); slot++) {
+            if (slot != querySlot && userVectorStore.isLive(slot)) {
+                double similarity = userVectorStore.similarity(querySlot, slot);
+                heap.offer(similarity, slot, userVectorStore.personalityIdAt(slot));
+            }
+        }
+        return heap;
+    }
+
+    //classes.slots()의 각 유저에 대해 자기 자신을 제외한 상위 k개를 구한다. buildRows와 결과가 같다.
+    //프로필끼리 한 번씩만 유사도를 계산해서 k + 1개를 고른 뒤, 유저마다 자기 자신만 빼서 펼친다.
+    public TopKHeap[] buildRows(ProfileClasses classes, int k) {
+        return topK(classes, userVectorStore::similarity, k, pool);
+    }
+
+    static TopKHeap[] topK(ProfileClasses classes, SlotSimilarity similarity, int k, ForkJoinPool pool) {
+        int profiles = classes.profiles();
+        TopKHeap[] profileRows = new TopKHeap[profiles];
+        pool.submit(() -> IntStream.range(0, profiles).parallel()
+            .forEach(profile -> profileRows[profile] = profileRow(classes, similarity, profile, k + 1))).join();
+
+        TopKHeap[] rows = new TopKHeap[classes.users()];
+        for (int i = 0; i < rows.length; i++) {
+            TopKHeap profileRow = profileRows[classes.profileOf()[i]];
+            TopKHeap row = new TopKHeap(k);
+            for (int j = 0; j < profileRow.size(); j++) {
+                if (profileRow.slotAt(j) != classes.slots()[i]) {
+                    row.offer(profileRow.similarityAt(j), profileRow.slotAt(j), profileRow.idAt(j));
+                }
+            }
+            rows[i] = row;
+        }
+        return rows;
+    }
+
+    private static TopKHeap profileRow(ProfileClasses classes, SlotSimilarity slotSimilarity, int profile, int k) {
+        TopKHeap heap = new TopKHeap(k);
+        int querySlot = classes.representativeSlots()[profile];
+        for (int other = 0; other < classes.profiles(); other++) {
+            double similarity = slotSimilarity.between(querySlot, classes.representativeSlots()[other]);
+            if (similarity < heap.threshold()) {
+                continue;
+            }
+            //프로필 안에서는 id 순서이므로 한 명이 밀리면 뒤의 유저도 모두 밀린다.
+            for (int m = classes.memberStarts()[other]; m < classes.memberStarts()[other + 1]; m++) {
+                int member = classes.members()[m];
+                if (!heap.offer(similarity, classes.slots()[member], classes.ids()[member])) {
+                    break;
+                }
+            }
+        }
+        return heap;
+    }
+
+    //행 단위 계산을 같은 풀에서 병렬로 돌린다.
+    public TopKHeap[] mapRows(int rowCount, IntFunction<TopKHeap> row) {
+        TopKHeap[] rows = new TopKHeap[rowCount];
+        pool.submit(() -> IntStream.range(0, rowCount).parallel().forEach(i -> rows[i] = row.apply(i))).join();
+        return rows;
+    }
+
+    public PackedVectors pack(int[] slots) {
+        int dimension = FeatureVector.DIMENSION;
+        double[] matrix = userVectorStore.matrix();
+        double[] vectors = new double[slots.length * dimension];
+        long[] ids = new long[slots.length];
+        byte[] codes = new byte[slots.length * dimension];
+        int[] squaredNorms = new int[slots.length];
+        for (int i = 0; i < slots.length; i++) {
+            System.arraycopy(matrix, UserVectorStore.offset(slots[i]), vectors, PackedVectors.offset(i), dimension);
+            System.arraycopy(userVectorStore.codes(), UserVectorStore.offset(slots[i]), codes, PackedVectors.offset(i), dimension);
+            ids[i] = userVectorStore.personalityIdAt(slots[i]);
+            squaredNorms[i] = userVectorStore.squaredNormAt(slots[i]);
+        }
+        return new PackedVectors(vectors, slots.clone(), ids, codes, squaredNorms);
+    }
+
+    static TopKHeap[] topK(PackedVectors queries, PackedVectors columns, int k, ForkJoinPool pool) {
+        TopKHeap[] rows = new TopKHeap[queries.size()];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = new TopKHeap(k);
+        }
+        pool.invoke(new RowTileTask(queries, columns, rows, 0, rows.length));
+        return rows;
+    }
+
+    private static class RowTileTask extends RecursiveAction {
+        private final PackedVectors queries;
+        private final PackedVectors columns;
+        private final TopKHeap[] rows;
+        private final int from;
+        private final int to;
+
+        RowTileTask(PackedVectors queries, PackedVectors columns, TopKHeap[] rows, int from, int to) {
+            this.queries = queries;
+            this.columns = columns;
+            this.rows = rows;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= ROW_TILE) {
+                computeTile();
+                return;
+            }
+            int tiles = (to - from + ROW_TILE - 1) / ROW_TILE;
+            int middle = from + (tiles / 2) * ROW_TILE;
+            invokeAll(new RowTileTask(queries, columns, rows, from, middle),
+                new RowTileTask(queries, columns, rows, middle, to));
+        }
+
+        private void computeTile() {
+            int[] columnSlots = columns.slots();
+            long[] columnIds = columns.ids();
+            int columnCount = columns.size();
+
+            for (int columnFrom = 0; columnFrom < columnCount; columnFrom += COLUMN_TILE) {
+                int columnTo = Math.min(columnFrom + COLUMN_TILE, columnCount);
+                for (int row = from; row < to; row++) {
+                    TopKHeap heap = rows[row];
+                    int querySlot = queries.slots()[row];
+                    for (int column = columnFrom; column < columnTo; column++) {
+                        if (columnSlots[column] == querySlot) {
+                            continue;
+                        }
+                        double similarity = queries.similarity(row, columns, column, UserVectorStore.KERNEL);
+                        heap.offer(similarity, columnSlots[column], columnIds[column]);
+                    }
+                }
+            }
+        }
+    }
+}
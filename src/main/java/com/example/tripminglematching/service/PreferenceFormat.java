@@ -0,0 +1,24 @@
+package com.example.tripminglematching.service;
+
+import com.example.tripminglematching.utils.PreferenceCodec;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+// 선호도 배열의 저장 형식. write-format으로 쓸 형식을 고른다. 선호 목록은 메모리(PreferenceIndex)에 있으므로 이 서버는 쓰기만 한다.
+// API 서버가 두 형식을 모두 읽을 수 있게 된 뒤에 binary로 바꾸면 기존 키는 다시 쓰일 때까지 JSON으로 남아 있어도 된다.
+@Component
+public class PreferenceFormat {
+
+    private final boolean binary;
+
+    public PreferenceFormat(@Value("${matching.preference.write-format:json}") String writeFormat) {
+        this.binary = "binary".equalsIgnoreCase(writeFormat);
+    }
+
+    public byte[] encode(long[] ids, double[] similarities, int count) {
+        return binary
+            ? PreferenceCodec.encodeBinary(ids, similarities, count)
+            : PreferenceCodec.encodeJson(ids, similarities, count);
+    }
+}
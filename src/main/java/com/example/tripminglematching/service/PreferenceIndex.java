@@ -0,0 +1,193 @@
+package com.example.tripminglematching.service;
+
+import java.util.Arrays;
+
+import com.example.tripminglematching.utils.TopKHeap;
+
+import org.springframework.stereotype.Component;
+
+// 유저별 선호도 배열을 슬롯 번호로 메모리에 들고 있는다. Redis에 쓰는 값의 원본이다.
+// 한 줄에는 상위 K개(visibleWidth) 뒤에 예비 M개를 더 들고 있어서, 삭제로 빠진 자리를 다시 계산하지 않고 채운다.
+// 마지막 항목의 유사도가 그 목록의 입장 기준(admission threshold)이므로, 새 유저가 들어갈 목록만 골라 정렬 삽입할 수 있다.
+// 순위는 유사도 내림차순이고, 유사도가 같으면 유저 성향 id가 작은 쪽이 앞선다. (TopKHeap, 전체 계산과 같은 순서)
+// 역방향 색인(referrers)으로 누가 X를 목록에 갖고 있는지 알 수 있어, 삭제 시 그 목록들만 고친다.
+@Component
+public class PreferenceIndex {
+
+    private final int visibleWidth = MatchingService.MAX_SIZE;
+    private final int width = MatchingService.MAX_SIZE + MatchingService.OVERFLOW_SIZE;
+
+    private int[] neighborSlots = new int[0];
+    private long[] neighborIds = new long[0];
+    private double[] similarities = new double[0];
+    private int[] sizes = new int[0];
+    //목록 밖으로 밀려난 유저가 있는지. 잘린 목록은 마지막 항목보다 나은 유저만 받을 수 있다.
+    private boolean[] truncated = new boolean[0];
+
+    private int[][] referrers = new int[0][];
+    private int[] referrerCounts = new int[0];
+
+    public int width() {
+        return width;
+    }
+
+    public void setRow(int slot, TopKHeap sortedPreferences) {
+        ensureCapacity(slot + 1);
+        clearRow(slot);
+        int count = Math.min(width, sortedPreferences.size());
+        int offset = slot * width;
+        for (int i = 0; i < count; i++) {
+            neighborSlots[offset + i] = sortedPreferences.slotAt(i);
+            neighborIds[offset + i] = sortedPreferences.idAt(i);
+            similarities[offset + i] = sortedPreferences.similarityAt(i);
+            addReferrer(sortedPreferences.slotAt(i), slot);
+        }
+        sizes[slot] = count;
+        truncated[slot] = count == width;
+    }
+
+    public void clearRow(int slot) {
+        if (slot >= sizes.length) {
+            return;
+        }
+        int offset = slot * width;
+        for (int i = 0; i < sizes[slot]; i++) {
+            removeReferrer(neighborSlots[offset + i], slot);
+        }
+        sizes[slot] = 0;
+        truncated[slot] = false;
+    }
+
+    public boolean admits(int slot, double similarity, long neighborId) {
+        int size = size(slot);
+        if (size == 0) {
+            return !isTruncated(slot);
+        }
+        if (size < width && !truncated[slot]) {
+            return true;
+        }
+        int last = slot * width + size - 1;
+        return TopKHeap.ranksBefore(similarity, neighborId, similarities[last], neighborIds[last]);
+    }
+
+    //정렬된 위치에 끼워 넣고 넘친 마지막 항목은 버린다. 들어간 순위를, 들어가지 못했으면 -1을 반환한다.
+    public int insert(int slot, int neighborSlot, long neighborId, double similarity) {
+        if (!admits(slot, similarity, neighborId)) {
+            return -1;
+        }
+        ensureCapacity(Math.max(slot, neighborSlot) + 1);
+        int offset = slot * width;
+        int size = sizes[slot];
+        int rank = size;
+        while (rank > 0 && TopKHeap.ranksBefore(similarity, neighborId, similarities[offset + rank - 1], neighborIds[offset + rank - 1])) {
+            rank--;
+        }
+        if (size == width) {
+            removeReferrer(neighborSlots[offset + width - 1], slot);
+            truncated[slot] = true;
+        }
+        int moved = Math.min(size, width - 1) - rank;
+        System.arraycopy(neighborSlots, offset + rank, neighborSlots, offset + rank + 1, moved);
+        System.arraycopy(neighborIds, offset + rank, neighborIds, offset + rank + 1, moved);
+        System.arraycopy(similarities, offset + rank, similarities, offset + rank + 1, moved);
+        neighborSlots[offset + rank] = neighborSlot;
+        neighborIds[offset + rank] = neighborId;
+        similarities[offset + rank] = similarity;
+        sizes[slot] = Math.min(size + 1, width);
+        addReferrer(neighborSlot, slot);
+        return rank;
+    }
+
+    //빠진 순위를, 목록에 없었으면 -1을 반환한다. 뒤의 예비 항목이 한 칸씩 당겨진다.
+    public int remove(int slot, int neighborSlot) {
+        int offset = slot * width;
+        int size = size(slot);
+        for (int i = 0; i < size; i++) {
+            if (neighborSlots[offset + i] == neighborSlot) {
+                System.arraycopy(neighborSlots, offset + i + 1, neighborSlots, offset + i, size - i - 1);
+                System.arraycopy(neighborIds, offset + i + 1, neighborIds, offset + i, size - i - 1);
+                System.arraycopy(similarities, offset + i + 1, similarities, offset + i, size - i - 1);
+                sizes[slot] = size - 1;
+                removeReferrer(neighborSlot, slot);
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    //예비 항목까지 다 써서 상위 K개를 채울 수 없으면 다시 계산해야 한다.
+    public boolean needsRebuild(int slot) {
+        return isTruncated(slot) && size(slot) < visibleWidth;
+    }
+
+    public boolean isVisible(int rank) {
+        return rank >= 0 && rank < visibleWidth;
+    }
+
+    //slot을 목록에 갖고 있는 유저들의 슬롯
+    public int[] referrersOf(int slot) {
+        if (slot >= referrerCounts.length || referrerCounts[slot] == 0) {
+            return new int[0];
+        }
+        return Arrays.copyOf(referrers[slot], referrerCounts[slot]);
+    }
+
+    public int size(int slot) {
+        return slot < sizes.length ? sizes[slot] : 0;
+    }
+
+    public int visibleSize(int slot) {
+        return Math.min(visibleWidth, size(slot));
+    }
+
+    public int neighborAt(int slot, int rank) {
+        return neighborSlots[slot * width + rank];
+    }
+
+    public double similarityAt(int slot, int rank) {
+        return similarities[slot * width + rank];
+    }
+
+    private boolean isTruncated(int slot) {
+        return slot < truncated.length && truncated[slot];
+    }
+
+    private void addReferrer(int neighborSlot, int slot) {
+        ensureCapacity(neighborSlot + 1);
+        int[] bag = referrers[neighborSlot];
+        int count = referrerCounts[neighborSlot];
+        if (bag == null) {
+            bag = referrers[neighborSlot] = new int[8];
+        } else if (count == bag.length) {
+            bag = referrers[neighborSlot] = Arrays.copyOf(bag, count * 2);
+        }
+        bag[count] = slot;
+        referrerCounts[neighborSlot] = count + 1;
+    }
+
+    private void removeReferrer(int neighborSlot, int slot) {
+        int[] bag = referrers[neighborSlot];
+        int count = referrerCounts[neighborSlot];
+        for (int i = 0; i < count; i++) {
+            if (bag[i] == slot) {
+                bag[i] = bag[count - 1];
+                referrerCounts[neighborSlot] = count - 1;
+                return;
+            }
+        }
+    }
+
+    private void ensureCapacity(int slotCount) {
+        if (slotCount <= sizes.length) {
+            return;
+        }
+        int capacity = Math.max(slotCount, Math.max(1024, sizes.length * 2));
+        neighborSlots = Arrays.copyOf(neighborSlots, capacity * width);
+        neighborIds = Arrays.copyOf(neighborIds, capacity * width);
+        similarities = Arrays.copyOf(similarities, capacity * width);
+        sizes = Arrays.copyOf(sizes, capacity);
+        truncated = Arrays.copyOf(truncated, capacity);
+        referrers = Arrays.copyOf(referrers, capacity);
+        referrerCounts = Arrays.copyOf(referrerCounts, capacity);
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.tripminglematching.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Component;
+
+// 선호도 배열 쓰기를 모아서 파이프라인으로 보낸다.
+// batch-size만큼 쌓이거나 flush-interval이 지나면 전용 스레드 하나가 순서대로 전송하므로 같은 키의 쓰기 순서가 유지된다.
+// 아직 전송되지 않은 명령은 max-in-flight개를 넘지 않으며, 넘으면 호출한 쪽이 기다린다.
+@Slf4j
+@Component
+public class PreferencePipeline {
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final RedisSerializer<Object> valueSerializer;
+    private final int batchSize;
+    private final Semaphore inFlight;
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "preference-pipeline");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Object lock = new Object();
+    private List<PendingWrite> pending = new ArrayList<>();
+
+    @SuppressWarnings("unchecked")
+    public PreferencePipeline(RedisTemplate<String, Object> redisTemplate,
+                              @Value("${matching.redis.write.batch-size:500}") int batchSize,
+                              @Value("${matching.redis.write.flush-interval-ms:20}") long flushIntervalMillis,
+                              @Value("${matching.redis.write.max-in-flight:20000}") int maxInFlight) {
+        this.redisTemplate = redisTemplate;
+        this.valueSerializer = (RedisSerializer<Object>) redisTemplate.getValueSerializer();
+        this.batchSize = batchSize;
+        this.inFlight = new Semaphore(maxInFlight);
+        flusher.scheduleWithFixedDelay(this::drain, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    //messageId는 실패했을 때 어떤 요청의 쓰기였는지 알리기 위한 것이다. 재구축처럼 요청이 없으면 null.
+    //byte[]는 그대로 저장하고, 그 밖의 값은 RedisTemplate의 값 직렬화기로 바꿔서 저장한다.
+    public CompletableFuture<Void> set(String key, Object value, String messageId) {
+        byte[] rawValue = value instanceof byte[] ? (byte[]) value : valueSerializer.serialize(value);
+        return enqueue(new PendingWrite(rawKey(key), rawValue, messageId, new CompletableFuture<>()));
+    }
+
+    public CompletableFuture<Void> delete(String key, String messageId) {
+        return enqueue(new PendingWrite(rawKey(key), null, messageId, new CompletableFuture<>()));
+    }
+
+    //지금까지 넣은 명령을 모두 보내고 끝날 때까지 기다린다.
+    public void flush() {
+        try {
+            flusher.submit(this::drain).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        flush();
+        flusher.shutdown();
+    }
+
+    private CompletableFuture<Void> enqueue(PendingWrite write) {
+        inFlight.acquireUninterruptibly();
+        boolean full;
+        synchronized (lock) {
+            pending.add(write);
+            full = pending.size() >= batchSize;
+        }
+        if (full) {
+            flusher.execute(this::drain);
+        }
+        return write.result();
+    }
+
+    private void drain() {
+        while (true) {
+            List<PendingWrite> batch;
+            synchronized (lock) {
+                if (pending.isEmpty()) {
+                    return;
+                }
+                if (pending.size() <= batchSize) {
+                    batch = pending;
+                    pending = new ArrayList<>();
+                } else {
+                    batch = new ArrayList<>(pending.subList(0, batchSize));
+                    pending.subList(0, batchSize).clear();
+                }
+            }
+            send(batch);
+        }
+    }
+
+    private void send(List<PendingWrite> batch) {
+        try {
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (PendingWrite write : batch) {
+                    if (write.value() == null) {
+                        connection.keyCommands().del(write.key());
+                    } else {
+                        connection.stringCommands().set(write.key(), write.value());
+                    }
+                }
+                return null;
+            });
+            batch.forEach(write -> write.result().complete(null));
+        } catch (Exception e) {
+            Set<String> messageIds = new LinkedHashSet<>();
+            batch.stream().map(PendingWrite::messageId).filter(Objects::nonNull).forEach(messageIds::add);
+            log.error("redis pipeline batch of {} commands failed, messageIds={}", batch.size(), messageIds, e);
+            batch.forEach(write -> write.result().completeExceptionally(e));
+        } finally {
+            inFlight.release(batch.size());
+        }
+    }
+
+    private byte[] rawKey(String key) {
+        return key.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private record PendingWrite(byte[] key, byte[] value, String messageId, CompletableFuture<Void> result) {
+    }
+}
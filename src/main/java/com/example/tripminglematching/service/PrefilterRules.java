@@ -0,0 +1,101 @@
+package com.example.tripminglematching.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.example.tripminglematching.service.BoardIndex.IndexedBoard;
+import com.example.tripminglematching.utils.SlotBitmap;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+// 게시물의 선호 조건으로 애초에 매칭하지 않을 유저를 비트맵으로 먼저 거른다.
+// 규칙은 "게시물 선호 필드=유저 속성:허용 차이"를 쉼표로 이어서 쓴다. 예) preferGender=gender:0,preferSmoking=smoking:1
+// 게시물의 선호 값이 3(상관없음)이면 그 규칙은 쓰지 않는다. 규칙이 없으면(기본값) 아무도 거르지 않는다.
+@Slf4j
+@Component
+public class PrefilterRules {
+
+    //BoardIndex.IndexedBoard.preferences 순서와 같다.
+    public static final List<String> BOARD_PREFERENCES = List.of(
+        "preferGender", "preferSmoking", "preferBudget", "preferPhoto", "preferDrink");
+    private static final int NEUTRAL_LEVEL = 3;
+
+    private record Rule(int preference, int attribute, int tolerance) {
+    }
+
+    private final AttributeBitmapIndex attributeBitmapIndex;
+    private final List<Rule> rules;
+
+    public PrefilterRules(AttributeBitmapIndex attributeBitmapIndex,
+                          @Value("${matching.prefilter.rules:}") String rules) {
+        this.attributeBitmapIndex = attributeBitmapIndex;
+        this.rules = parse(rules);
+        if (!this.rules.isEmpty()) {
+            log.info("board prefilter rules : {}", this.rules);
+        }
+    }
+
+    public boolean isEmpty() {
+        return rules.isEmpty();
+    }
+
+    //게시물별 allowedUsers. 규칙이 없으면 null
+    public SlotBitmap[] allowedUsers(List<IndexedBoard> boards) {
+        if (rules.isEmpty()) {
+            return null;
+        }
+        SlotBitmap[] allowed = new SlotBitmap[boards.size()];
+        for (int board = 0; board < allowed.length; board++) {
+            allowed[board] = allowedUsers(boards.get(board).preferences());
+        }
+        return allowed;
+    }
+
+    //유저 한 명만 볼 때는 비트맵을 만들지 않고 그 유저의 값만 비교한다.
+    public boolean allows(double[] boardPreferences, int slot) {
+        for (Rule rule : rules) {
+            int level = AttributeBitmapIndex.level(boardPreferences[rule.preference()]);
+            if (level != NEUTRAL_LEVEL && Math.abs(attributeBitmapIndex.levelOf(slot, rule.attribute()) - level) > rule.tolerance()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //이 게시물과 매칭할 수 있는 유저 슬롯. 걸리는 규칙이 없으면 null(모두 허용)
+    public SlotBitmap allowedUsers(double[] boardPreferences) {
+        SlotBitmap allowed = null;
+        for (Rule rule : rules) {
+            int level = AttributeBitmapIndex.level(boardPreferences[rule.preference()]);
+            if (level == NEUTRAL_LEVEL) {
+                continue;
+            }
+            SlotBitmap slots = attributeBitmapIndex.slotsBetween(rule.attribute(), level - rule.tolerance(), level + rule.tolerance());
+            allowed = allowed == null ? slots : allowed.and(slots);
+        }
+        return allowed;
+    }
+
+    private static List<Rule> parse(String value) {
+        List<Rule> rules = new ArrayList<>();
+        if (value == null || value.isBlank()) {
+            return rules;
+        }
+        for (String token : value.split(",")) {
+            String[] rule = token.trim().split("[=:]");
+            if (rule.length != 3) {
+                throw new IllegalArgumentException("invalid prefilter rule : " + token);
+            }
+            int preference = BOARD_PREFERENCES.indexOf(rule[0].trim());
+            int attribute = AttributeBitmapIndex.ATTRIBUTES.indexOf(rule[1].trim());
+            if (preference < 0 || attribute < 0) {
+                throw new IllegalArgumentException("unknown prefilter field : " + token);
+            }
+            rules.add(new Rule(preference, attribute, Integer.parseInt(rule[2].trim())));
+        }
+        return rules;
+    }
+}
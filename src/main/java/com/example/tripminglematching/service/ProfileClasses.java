@@ -0,0 +1,20 @@
+package com.example.tripminglematching.service;
+
+// 정규화된 벡터가 비트 단위로 같은 유저끼리 묶은 프로필.
+// 유저는 slots의 인덱스로 다룬다. members[memberStarts[p] ~ memberStarts[p + 1]]가 프로필 p의 유저이고, 프로필 안에서는 성향 id 오름차순이다.
+// 같은 벡터끼리의 유사도는 비트 단위로 같으므로 프로필 대표 슬롯으로 계산한 값을 그 프로필의 모든 유저에 그대로 쓸 수 있다.
+public record ProfileClasses(int[] slots, long[] ids, int[] profileOf, int[] representativeSlots,
+                             int[] memberStarts, int[] members) {
+
+    public int users() {
+        return slots.length;
+    }
+
+    public int profiles() {
+        return representativeSlots.length;
+    }
+
+    public InterningReport report() {
+        return new InterningReport(users(), profiles(), profiles() == 0 ? 1.0 : (double) users() / profiles());
+    }
+}
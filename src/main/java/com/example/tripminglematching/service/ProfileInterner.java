@@ -0,0 +1,96 @@
+package com.example.tripminglematching.service;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.example.tripminglematching.utils.FeatureVector;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.stereotype.Component;
+
+// 성향 응답이 1~5의 좁은 범위라서 벡터가 완전히 같은 유저가 많다. 그런 유저를 프로필 하나로 묶는다.
+// 유사도는 프로필마다 한 번만 계산하고, 상위 K 목록이나 매칭 결과를 쓸 때만 유저로 펼친다.
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ProfileInterner {
+
+    //정수 코드의 유사도는 노름 제곱에 따라 달라지므로, 정규화 벡터와 노름 제곱(코드가 없으면 -1)이 모두 같아야 한 프로필이다.
+    private record VectorKey(double[] vector, int squaredNorm) {
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof VectorKey key && squaredNorm == key.squaredNorm && Arrays.equals(vector, key.vector);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(vector) * 31 + squaredNorm;
+        }
+    }
+
+    private final UserVectorStore userVectorStore;
+
+    private volatile InterningReport lastReport = new InterningReport(0, 0, 1.0);
+
+    public ProfileClasses intern(int[] slots) {
+        long[] ids = new long[slots.length];
+        for (int i = 0; i < slots.length; i++) {
+            ids[i] = userVectorStore.personalityIdAt(slots[i]);
+        }
+        int[] squaredNorms = new int[slots.length];
+        for (int i = 0; i < slots.length; i++) {
+            squaredNorms[i] = userVectorStore.squaredNormAt(slots[i]);
+        }
+        ProfileClasses classes = intern(slots, ids, squaredNorms, userVectorStore.matrix());
+        lastReport = classes.report();
+        return classes;
+    }
+
+    //마지막으로 묶은 유저 집합의 압축률
+    public InterningReport lastReport() {
+        return lastReport;
+    }
+
+    //matrix는 UserVectorStore.offset(slot) 배치를 따른다. ids와 squaredNorms는 slots와 같은 순서다.
+    static ProfileClasses intern(int[] slots, long[] ids, int[] squaredNorms, double[] matrix) {
+        int users = slots.length;
+        Map<VectorKey, Integer> profileByVector = new HashMap<>();
+        int[] profileOf = new int[users];
+        int[] representatives = new int[users];
+        int[] counts = new int[users + 1];
+        for (int i = 0; i < users; i++) {
+            int offset = UserVectorStore.offset(slots[i]);
+            VectorKey key = new VectorKey(Arrays.copyOfRange(matrix, offset, offset + FeatureVector.DIMENSION), squaredNorms[i]);
+            Integer profile = profileByVector.get(key);
+            if (profile == null) {
+                profile = profileByVector.size();
+                profileByVector.put(key, profile);
+                representatives[profile] = slots[i];
+            }
+            profileOf[i] = profile;
+            counts[profile + 1]++;
+        }
+        int profiles = profileByVector.size();
+
+        //프로필별로 모으고, 프로필 안에서는 성향 id 순서로 둔다.
+        int[] memberStarts = new int[profiles + 1];
+        for (int profile = 0; profile < profiles; profile++) {
+            memberStarts[profile + 1] = memberStarts[profile] + counts[profile + 1];
+        }
+        int[] members = new int[users];
+        int[] cursor = Arrays.copyOf(memberStarts, profiles);
+        Integer[] byId = new Integer[users];
+        for (int i = 0; i < users; i++) {
+            byId[i] = i;
+        }
+        Arrays.sort(byId, (a, b) -> Long.compare(ids[a], ids[b]));
+        for (int i : byId) {
+            members[cursor[profileOf[i]]++] = i;
+        }
+
+        return new ProfileClasses(slots, ids, profileOf, Arrays.copyOf(representatives, profiles), memberStarts, members);
+    }
+}
@@ -0,0 +1,6 @@
+package com.example.tripminglematching.service;
+
+// HNSW 결과를 전수 비교 결과와 대조한 품질 보고서
+public record RecallReport(int sampleSize, int k, int efSearch, double recall,
+                           double exactMillisPerQuery, double approximateMillisPerQuery) {
+}
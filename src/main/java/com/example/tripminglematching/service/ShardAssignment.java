@@ -0,0 +1,82 @@
+package com.example.tripminglematching.service;
+
+import java.util.Arrays;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+// 여러 인스턴스가 유저 성향 id로 선호 목록을 나눠 맡는다. count가 1이면(기본값) 모두 이 인스턴스가 맡는다.
+// hash는 id를 섞어서 count로 나눈 나머지, range는 설정(range-bounds)에 적힌 구간 경계로 나눈다.
+// 경계는 인스턴스가 가진 데이터와 상관없는 고정 값이므로, 모든 인스턴스에 같은 값을 주면 같은 id는 항상 같은 샤드가 된다.
+// i번째 경계는 i번째 구간의 마지막 id이고, 마지막 경계보다 큰 id는 마지막 구간이 맡는다.
+@Slf4j
+@Component
+public class ShardAssignment {
+
+    public enum Strategy { HASH, RANGE }
+
+    private final int count;
+    private final int index;
+    private final Strategy strategy;
+    //range일 때 i번째 구간의 마지막 id (count - 1개, 오름차순)
+    private final long[] upperBounds;
+
+    public ShardAssignment(@Value("${matching.sharding.count:1}") int count,
+                           @Value("${matching.sharding.index:0}") int index,
+                           @Value("${matching.sharding.strategy:hash}") String strategy,
+                           @Value("${matching.sharding.range-bounds:}") String rangeBounds) {
+        if (count < 1 || index < 0 || index >= count) {
+            throw new IllegalArgumentException("matching.sharding.index must be in [0, count) : " + index + "/" + count);
+        }
+        this.count = count;
+        this.index = index;
+        this.strategy = Strategy.valueOf(strategy.toUpperCase());
+        this.upperBounds = this.strategy == Strategy.RANGE && count > 1 ? parseBounds(rangeBounds, count) : new long[0];
+        if (upperBounds.length > 0) {
+            log.info("shard {}/{} id ranges : {}", index, count, Arrays.toString(upperBounds));
+        }
+    }
+
+    public boolean isSharded() {
+        return count > 1;
+    }
+
+    public int count() {
+        return count;
+    }
+
+    public int index() {
+        return index;
+    }
+
+    public boolean owns(long id) {
+        return count == 1 || shardOf(id) == index;
+    }
+
+    public int shardOf(long id) {
+        if (strategy == Strategy.HASH) {
+            return (int) (((id * 0x9E3779B97F4A7C15L) >>> 32) % count);
+        }
+        int position = Arrays.binarySearch(upperBounds, id);
+        return position >= 0 ? position : -position - 1;
+    }
+
+    private static long[] parseBounds(String rangeBounds, int count) {
+        long[] bounds = Arrays.stream(rangeBounds.split(","))
+            .map(String::trim)
+            .filter(bound -> !bound.isEmpty())
+            .mapToLong(Long::parseLong)
+            .toArray();
+        if (bounds.length != count - 1) {
+            throw new IllegalArgumentException("matching.sharding.range-bounds needs " + (count - 1) + " ids : " + rangeBounds);
+        }
+        for (int i = 1; i < bounds.length; i++) {
+            if (bounds[i] <= bounds[i - 1]) {
+                throw new IllegalArgumentException("matching.sharding.range-bounds must be ascending : " + rangeBounds);
+            }
+        }
+        return bounds;
+    }
+}
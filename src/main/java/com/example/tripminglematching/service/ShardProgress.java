@@ -0,0 +1,60 @@
+package com.example.tripminglematching.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+// 샤드별 선호 목록 재구축 진행 상황을 Redis 해시 하나에 모은다. 필드는 샤드 번호, 값은 "끝난 행 수/맡은 행 수"이다.
+// 어느 인스턴스든 read()로 전체 샤드의 진행 상황을 볼 수 있다.
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ShardProgress {
+
+    static final String PROGRESS_KEY = "preferenceRebuild-progress";
+
+    public record ShardStatus(int shard, long done, long total) {
+        public boolean isDone() {
+            return done >= total;
+        }
+    }
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    //진행 상황을 못 남겨도 재구축은 계속한다.
+    public void report(int shard, long done, long total) {
+        try {
+            stringRedisTemplate.opsForHash().put(PROGRESS_KEY, Integer.toString(shard), done + "/" + total);
+        } catch (RuntimeException e) {
+            log.warn("failed to report rebuild progress of shard {} : {}", shard, e.getMessage());
+        }
+    }
+
+    //코디네이터 역할. 이 인스턴스가 끝났을 때 전체 샤드의 진행 상황을 남긴다.
+    public void logSummary() {
+        try {
+            List<ShardStatus> statuses = read();
+            long done = statuses.stream().filter(ShardStatus::isDone).count();
+            log.info("preference rebuild : {} of {} reported shards done {}", done, statuses.size(), statuses);
+        } catch (RuntimeException e) {
+            log.warn("failed to read rebuild progress : {}", e.getMessage());
+        }
+    }
+
+    public List<ShardStatus> read() {
+        Map<Object, Object> entries = stringRedisTemplate.opsForHash().entries(PROGRESS_KEY);
+        List<ShardStatus> statuses = new ArrayList<>(entries.size());
+        entries.forEach((shard, value) -> {
+            String[] parts = value.toString().split("/");
+            statuses.add(new ShardStatus(Integer.parseInt(shard.toString()), Long.parseLong(parts[0]), Long.parseLong(parts[1])));
+        });
+        statuses.sort((a, b) -> Integer.compare(a.shard(), b.shard()));
+        return statuses;
+    }
+}
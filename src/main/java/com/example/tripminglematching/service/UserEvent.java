@@ -0,0 +1,16 @@
+package com.example.tripminglematching.service;
+
+// 유저 성향 추가/재계산 요청 하나. 여러 개를 모아서 MatchingService.applyUserEvents로 한 번에 반영한다.
+public record UserEvent(Long userPersonalityId, String messageId, boolean recalculate) {
+
+    public String topic() {
+        return recalculate ? MessagePublisher.TOPIC_RE_CALCULATE_USER_RES_PUBLISH : MessagePublisher.TOPIC_ADD_USER_RES_PUBLISH;
+    }
+
+    public String result(boolean success) {
+        if (recalculate) {
+            return success ? MessagePublisher.RE_CALCULATE_USER_PERSONALITY_SUCCESS : MessagePublisher.FAIL_TO_RE_CALCULATE_USER_PERSONALITY;
+        }
+        return success ? MessagePublisher.ADD_USER_PERSONALITY_SUCCESS : MessagePublisher.FAIL_TO_ADD_USER_PERSONALITY;
+    }
+}
@@ -0,0 +1,240 @@
+package com.example.tripminglematching.service;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.example.tripminglematching.entity.UserPersonality;
+import com.example.tripminglematching.repository.UserPersonalityRepository;
+import com.example.tripminglematching.utils.FeatureVector;
+import com.example.tripminglematching.utils.LongIntHashMap;
+import com.example.tripminglematching.utils.QuantizedKernel;
+import com.example.tripminglematching.utils.SimilarityUtils;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+// 모든 유저 성향벡터를 정규화하여 하나의 연속된 배열에 보관한다.
+// 기동 시 한 번만 DB에서 읽고, 이후에는 추가/재계산/삭제 이벤트로 제자리에서 갱신한다.
+// 슬롯 번호는 유저가 삭제되기 전까지 바뀌지 않으므로 다른 인덱스들이 슬롯으로 참조해도 된다.
+// quantized.enabled면 응답이 정수인 유저의 특성을 차원당 1바이트 코드로도 들고 있고(double의 1/8),
+// 두 유저 모두 코드가 있으면 유사도를 정수 내적으로 계산한다. 쌍마다 계산 방식이 정해지므로 같은 쌍은 항상 같은 값이 나온다.
+// put/remove는 쓰기 락을 잡는다. 여러 번 읽는 동안 값이 바뀌면 안 되는 쪽(매칭)은 readLock()을 잡고 읽는다.
+// 쓰는 쪽은 한 번에 하나(MatchingService의 유저 상태 락 안)이므로 쓰는 스레드는 락 없이 읽어도 된다.
+@Slf4j
+@Component
+public class UserVectorStore {
+
+    private static final int DIMENSION = FeatureVector.DIMENSION;
+    private static final int INITIAL_CAPACITY = 1024;
+    public static final QuantizedKernel KERNEL = new QuantizedKernel(UserPersonality.featureWeights());
+
+    private final UserPersonalityRepository userPersonalityRepository;
+    private final AttributeBitmapIndex attributeBitmapIndex;
+    private final boolean quantizedEnabled;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock(true);
+
+    private final LongIntHashMap slotById = new LongIntHashMap(INITIAL_CAPACITY);
+    private final LongIntHashMap slotByUserId = new LongIntHashMap(INITIAL_CAPACITY);
+    private double[] matrix = new double[INITIAL_CAPACITY * DIMENSION];
+    private long[] personalityIds = new long[INITIAL_CAPACITY];
+    private long[] userIds = new long[INITIAL_CAPACITY];
+    private boolean[] live = new boolean[INITIAL_CAPACITY];
+    //변경 번호. put/remove마다 1씩 늘고, 슬롯별로 마지막으로 put된 때의 번호를 기록한다.
+    private long version;
+    private long[] slotVersions = new long[INITIAL_CAPACITY];
+    //슬롯별 정수 코드와 노름 제곱. 코드로 나타낼 수 없거나 꺼져 있으면 노름 제곱이 -1
+    private byte[] codes = new byte[INITIAL_CAPACITY * DIMENSION];
+    private int[] squaredNorms = new int[INITIAL_CAPACITY];
+    private int[] freeSlots = new int[16];
+    private int freeCount;
+    private int slotLimit;
+    private int size;
+
+    public UserVectorStore(UserPersonalityRepository userPersonalityRepository, AttributeBitmapIndex attributeBitmapIndex,
+                           @Value("${matching.quantized.enabled:false}") boolean quantizedEnabled) {
+        this.userPersonalityRepository = userPersonalityRepository;
+        this.attributeBitmapIndex = attributeBitmapIndex;
+        this.quantizedEnabled = quantizedEnabled;
+    }
+
+    @PostConstruct
+    void load() {
+        userPersonalityRepository.findAll().forEach(this::put);
+        log.info("loaded {} user vectors", size);
+        attributeBitmapIndex.logFootprint(slotLimit);
+    }
+
+    //새 유저면 슬롯을 할당하고, 이미 있으면 같은 슬롯의 벡터를 덮어쓴다.
+    public int put(UserPersonality userPersonality) {
+        lock.writeLock().lock();
+        try {
+            return write(userPersonality);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int remove(long personalityId) {
+        lock.writeLock().lock();
+        try {
+            return erase(personalityId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public Lock readLock() {
+        return lock.readLock();
+    }
+
+    private int write(UserPersonality userPersonality) {
+        long personalityId = userPersonality.getId();
+        int slot = slotById.get(personalityId);
+        if (slot == LongIntHashMap.MISSING) {
+            slot = allocateSlot();
+            slotById.put(personalityId, slot);
+            live[slot] = true;
+            size++;
+        }
+        long userId = userPersonality.getUser().getId();
+        if (slotByUserId.get(userIds[slot]) == slot) {
+            slotByUserId.remove(userIds[slot]);
+        }
+        personalityIds[slot] = personalityId;
+        userIds[slot] = userId;
+        slotByUserId.put(userId, slot);
+        slotVersions[slot] = ++version;
+        double[] features = userPersonality.toFeatureArray();
+        System.arraycopy(FeatureVector.of(features).values(), 0, matrix, offset(slot), DIMENSION);
+        squaredNorms[slot] = quantizedEnabled && KERNEL.encode(features, codes, offset(slot))
+            ? KERNEL.squaredNorm(codes, offset(slot)) : -1;
+        attributeBitmapIndex.put(slot, userPersonality.toAnswerArray());
+        return slot;
+    }
+
+    private int erase(long personalityId) {
+        int slot = slotById.remove(personalityId);
+        if (slot == LongIntHashMap.MISSING) {
+            return slot;
+        }
+        live[slot] = false;
+        if (slotByUserId.get(userIds[slot]) == slot) {
+            slotByUserId.remove(userIds[slot]);
+        }
+        Arrays.fill(matrix, offset(slot), offset(slot) + DIMENSION, 0.0);
+        squaredNorms[slot] = -1;
+        attributeBitmapIndex.remove(slot);
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeCount << 1);
+        }
+        freeSlots[freeCount++] = slot;
+        size--;
+        version++;
+        return slot;
+    }
+
+    public int slotOf(long personalityId) {
+        return slotById.get(personalityId);
+    }
+
+    public long version() {
+        return version;
+    }
+
+    public long slotVersion(int slot) {
+        return slotVersions[slot];
+    }
+
+    //유저 id로 찾는다. 성향이 없으면 LongIntHashMap.MISSING
+    public int slotOfUser(long userId) {
+        return slotByUserId.get(userId);
+    }
+
+    public boolean contains(long personalityId) {
+        return slotById.containsKey(personalityId);
+    }
+
+    public boolean isLive(int slot) {
+        return slot < slotLimit && live[slot];
+    }
+
+    public long personalityIdAt(int slot) {
+        return personalityIds[slot];
+    }
+
+    public long userIdAt(int slot) {
+        return userIds[slot];
+    }
+
+    //모든 슬롯 번호는 slotLimit 미만이다. 삭제된 슬롯은 isLive로 거른다.
+    public int slotLimit() {
+        return slotLimit;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int[] liveSlots() {
+        int[] slots = new int[size];
+        int n = 0;
+        for (int slot = 0; slot < slotLimit; slot++) {
+            if (live[slot]) {
+                slots[n++] = slot;
+            }
+        }
+        return slots;
+    }
+
+    //행 우선(row-major) 행렬. slot의 벡터는 offset(slot)부터 DIMENSION개이다.
+    public double[] matrix() {
+        return matrix;
+    }
+
+    public static int offset(int slot) {
+        return slot * DIMENSION;
+    }
+
+    public double similarity(int slotA, int slotB) {
+        if (squaredNorms[slotA] >= 0 && squaredNorms[slotB] >= 0) {
+            return QuantizedKernel.similarity(KERNEL.dot(codes, offset(slotA), codes, offset(slotB)),
+                squaredNorms[slotA], squaredNorms[slotB]);
+        }
+        return SimilarityUtils.dot(matrix, offset(slotA), matrix, offset(slotB));
+    }
+
+    //코드 배열. slot의 코드는 offset(slot)부터 DIMENSION개이다.
+    public byte[] codes() {
+        return codes;
+    }
+
+    //코드가 없으면 -1
+    public int squaredNormAt(int slot) {
+        return squaredNorms[slot];
+    }
+
+    public double[] vectorAt(int slot) {
+        return Arrays.copyOfRange(matrix, offset(slot), offset(slot) + DIMENSION);
+    }
+
+    private int allocateSlot() {
+        if (freeCount > 0) {
+            return freeSlots[--freeCount];
+        }
+        if (slotLimit == personalityIds.length) {
+            int capacity = personalityIds.length << 1;
+            matrix = Arrays.copyOf(matrix, capacity * DIMENSION);
+            personalityIds = Arrays.copyOf(personalityIds, capacity);
+            userIds = Arrays.copyOf(userIds, capacity);
+            live = Arrays.copyOf(live, capacity);
+            slotVersions = Arrays.copyOf(slotVersions, capacity);
+            codes = Arrays.copyOf(codes, capacity * DIMENSION);
+            squaredNorms = Arrays.copyOf(squaredNorms, capacity);
+        }
+        return slotLimit++;
+    }
+}
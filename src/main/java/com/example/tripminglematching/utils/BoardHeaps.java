@@ -0,0 +1,82 @@
+package com.example.tripminglematching.utils;
+
+// 게시물별로 매칭된 유저를 담는 최대 힙. 루트가 가장 덜 선호되는 유저다.
+// 게시물마다 자기 칸만 쓰므로 서로 다른 게시물은 동시에 고쳐도 된다.
+final class BoardHeaps {
+
+    private final int capacity;
+    private final double[] heapScores;
+    private final int[] heapUsers;
+    private final int[] heapSizes;
+
+    BoardHeaps(int boards, int capacity) {
+        this.capacity = capacity;
+        this.heapScores = new double[boards * capacity];
+        this.heapUsers = new int[boards * capacity];
+        this.heapSizes = new int[boards];
+    }
+
+    int size(int board) {
+        return heapSizes[board];
+    }
+
+    boolean isFull(int board) {
+        return heapSizes[board] == capacity;
+    }
+
+    double rootScore(int board) {
+        return heapScores[board * capacity];
+    }
+
+    int rootUser(int board) {
+        return heapUsers[board * capacity];
+    }
+
+    //순서와 상관없이 i번째 유저
+    int userAt(int board, int i) {
+        return heapUsers[board * capacity + i];
+    }
+
+    double scoreAt(int board, int i) {
+        return heapScores[board * capacity + i];
+    }
+
+    void push(int board, double score, int user) {
+        int base = board * capacity;
+        int i = heapSizes[board]++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!StableMatcher.prefers(heapScores[base + parent], heapUsers[base + parent], score, user)) {
+                break;
+            }
+            heapScores[base + i] = heapScores[base + parent];
+            heapUsers[base + i] = heapUsers[base + parent];
+            i = parent;
+        }
+        heapScores[base + i] = score;
+        heapUsers[base + i] = user;
+    }
+
+    void replaceRoot(int board, double score, int user) {
+        int base = board * capacity;
+        int size = heapSizes[board];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && StableMatcher.prefers(heapScores[base + child], heapUsers[base + child], heapScores[base + child + 1], heapUsers[base + child + 1])) {
+                child++;
+            }
+            if (!StableMatcher.prefers(score, user, heapScores[base + child], heapUsers[base + child])) {
+                break;
+            }
+            heapScores[base + i] = heapScores[base + child];
+            heapUsers[base + i] = heapUsers[base + child];
+            i = child;
+        }
+        heapScores[base + i] = score;
+        heapUsers[base + i] = user;
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.tripminglematching.utils;
+
+import java.util.Arrays;
+
+// 정규화된 특성벡터. 노름을 미리 나눠두어 코사인 유사도를 내적만으로 계산한다.
+public final class FeatureVector {
+
+    public static final int DIMENSION = 16;
+
+    private final double[] values;
+    private final double norm;
+
+    private FeatureVector(double[] values, double norm) {
+        this.values = values;
+        this.norm = norm;
+    }
+
+    public static FeatureVector of(double[] raw) {
+        if (raw.length != DIMENSION) {
+            throw new IllegalArgumentException("Vectors must be of the same length");
+        }
+        double norm = Math.sqrt(SimilarityUtils.dot(raw, 0, raw, 0));
+        double[] values = new double[DIMENSION];
+        //영벡터는 기존과 동일하게 NaN 유사도가 나오도록 그대로 0으로 나눈다.
+        for (int i = 0; i < DIMENSION; i++) {
+            values[i] = raw[i] / norm;
+        }
+        return new FeatureVector(values, norm);
+    }
+
+    public double[] values() {
+        return values;
+    }
+
+    public double norm() {
+        return norm;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof FeatureVector)) return false;
+        return Arrays.equals(values, ((FeatureVector) o).values);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(values);
+    }
+}
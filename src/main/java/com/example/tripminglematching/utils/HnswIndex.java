@@ -0,0 +1,444 @@
+package com.example.tripminglematching.utils;
+
+import java.util.Arrays;
+import java.util.Random;
+
+// 정규화된 성향벡터 위의 HNSW 그래프. 유사도(내적)가 클수록 가깝다.
+// 노드 번호는 UserVectorStore의 슬롯을 그대로 쓰며, 삽입/갱신/삭제를 모두 지원한다.
+// 쓰기는 한 스레드에서만 하고, 검색은 여러 스레드에서 동시에 해도 된다.
+public class HnswIndex {
+
+    private static final int DIMENSION = FeatureVector.DIMENSION;
+
+    private final int m;
+    private final int maxM0;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final Random random = new Random(42);
+    private final ThreadLocal<SearchContext> contexts = ThreadLocal.withInitial(SearchContext::new);
+
+    private double[] vectors = new double[0];
+    private long[] ids = new long[0];
+    private int[] levels = new int[0];
+    private int[][][] links = new int[0][][];
+    private boolean[] present = new boolean[0];
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+    private int size;
+
+    public HnswIndex(int m, int efConstruction) {
+        this.m = m;
+        this.maxM0 = m * 2;
+        this.efConstruction = efConstruction;
+        this.levelMultiplier = 1.0 / Math.log(m);
+    }
+
+    public void insert(int slot, long id, double[] normalizedVector) {
+        if (contains(slot)) {
+            remove(slot);
+        }
+        ensureCapacity(slot + 1);
+        int level = (int) (-Math.log(1.0 - random.nextDouble()) * levelMultiplier);
+        System.arraycopy(normalizedVector, 0, vectors, slot * DIMENSION, DIMENSION);
+        ids[slot] = id;
+        levels[slot] = level;
+        links[slot] = new int[level + 1][];
+        for (int layer = 0; layer <= level; layer++) {
+            links[slot][layer] = new int[1 + maxLinks(layer)];
+        }
+        present[slot] = true;
+        size++;
+
+        if (entryPoint < 0) {
+            entryPoint = slot;
+            maxLevel = level;
+            return;
+        }
+
+        SearchContext context = contexts.get();
+        int current = entryPoint;
+        for (int layer = maxLevel; layer > level; layer--) {
+            current = greedyClosest(normalizedVector, 0, current, layer);
+        }
+        for (int layer = Math.min(level, maxLevel); layer >= 0; layer--) {
+            int found = searchLayer(normalizedVector, 0, current, efConstruction, layer, context);
+            int[] candidates = Arrays.copyOf(context.resultSlots, found);
+            int[] selected = selectNeighbors(slot, candidates, maxLinks(layer));
+            setLinks(slot, layer, selected, selected.length);
+            for (int neighbor : selected) {
+                connect(neighbor, slot, layer);
+            }
+            current = candidates[0];
+        }
+        if (level > maxLevel) {
+            entryPoint = slot;
+            maxLevel = level;
+        }
+    }
+
+    //지운 노드의 이웃끼리 서로 다시 이어 그래프가 끊기지 않게 한다.
+    public void remove(int slot) {
+        if (!contains(slot)) {
+            return;
+        }
+        present[slot] = false;
+        size--;
+        for (int layer = 0; layer <= levels[slot]; layer++) {
+            int[] removedLinks = links[slot][layer];
+            int count = removedLinks[0];
+            for (int i = 1; i <= count; i++) {
+                int neighbor = removedLinks[i];
+                if (!reachable(neighbor, layer)) {
+                    continue;
+                }
+                int[] neighborLinks = links[neighbor][layer];
+                int[] candidates = new int[neighborLinks[0] + count];
+                int n = 0;
+                for (int j = 1; j <= neighborLinks[0]; j++) {
+                    if (neighborLinks[j] != slot && reachable(neighborLinks[j], layer)) {
+                        candidates[n++] = neighborLinks[j];
+                    }
+                }
+                for (int j = 1; j <= count; j++) {
+                    int candidate = removedLinks[j];
+                    if (candidate != neighbor && reachable(candidate, layer) && !containsLink(neighborLinks, candidate)) {
+                        candidates[n++] = candidate;
+                    }
+                }
+                int[] selected = selectNeighbors(neighbor, sortBySimilarity(neighbor, Arrays.copyOf(candidates, n)), maxLinks(layer));
+                setLinks(neighbor, layer, selected, selected.length);
+            }
+        }
+        links[slot] = null;
+        if (entryPoint == slot) {
+            resetEntryPoint();
+        }
+    }
+
+    public boolean contains(int slot) {
+        return slot < present.length && present[slot];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    //query와 가장 유사한 k개. excludeSlot(보통 질의 유저 자신)은 결과에서 뺀다.
+    public TopKHeap search(double[] query, int queryOffset, int k, int ef, int excludeSlot) {
+        TopKHeap result = new TopKHeap(k);
+        if (entryPoint < 0) {
+            return result;
+        }
+        int current = entryPoint;
+        for (int layer = maxLevel; layer > 0; layer--) {
+            current = greedyClosest(query, queryOffset, current, layer);
+        }
+        SearchContext context = contexts.get();
+        int found = searchLayer(query, queryOffset, current, Math.max(ef, k + 1), 0, context);
+        for (int i = 0; i < found; i++) {
+            int slot = context.resultSlots[i];
+            if (slot != excludeSlot) {
+                result.offer(context.resultSimilarities[i], slot, ids[slot]);
+            }
+        }
+        return result;
+    }
+
+    private int greedyClosest(double[] query, int queryOffset, int start, int layer) {
+        int current = start;
+        double best = similarity(query, queryOffset, current);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            int[] currentLinks = links[current][layer];
+            for (int i = 1; i <= currentLinks[0]; i++) {
+                int neighbor = currentLinks[i];
+                if (!reachable(neighbor, layer)) {
+                    continue;
+                }
+                double similarity = similarity(query, queryOffset, neighbor);
+                if (similarity > best) {
+                    best = similarity;
+                    current = neighbor;
+                    changed = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    //결과는 context.resultSlots/resultSimilarities에 유사도 내림차순으로 채워지고, 개수를 반환한다.
+    private int searchLayer(double[] query, int queryOffset, int start, int ef, int layer, SearchContext context) {
+        context.reset(present.length, ef);
+        context.visit(start);
+        double startSimilarity = similarity(query, queryOffset, start);
+        context.pushCandidate(startSimilarity, start);
+        context.pushResult(startSimilarity, start);
+
+        while (context.candidateCount > 0) {
+            double candidateSimilarity = context.candidateSimilarities[0];
+            int candidate = context.popCandidate();
+            if (context.resultCount >= ef && candidateSimilarity < context.worstResult()) {
+                break;
+            }
+            int[] candidateLinks = links[candidate][layer];
+            for (int i = 1; i <= candidateLinks[0]; i++) {
+                int neighbor = candidateLinks[i];
+                if (!reachable(neighbor, layer) || !context.visit(neighbor)) {
+                    continue;
+                }
+                double similarity = similarity(query, queryOffset, neighbor);
+                if (context.resultCount < ef || similarity > context.worstResult()) {
+                    context.pushCandidate(similarity, neighbor);
+                    context.pushResult(similarity, neighbor);
+                    if (context.resultCount > ef) {
+                        context.popResult();
+                    }
+                }
+            }
+        }
+        return context.drainResultsDescending();
+    }
+
+    //후보 중에서 이미 고른 이웃보다 기준 노드에 더 가까운 것만 고른다. 동일한 벡터가 몰려 그래프가 고립되는 것을 막는다.
+    private int[] selectNeighbors(int base, int[] sortedCandidates, int limit) {
+        int[] selected = new int[Math.min(limit, sortedCandidates.length)];
+        int n = 0;
+        for (int candidate : sortedCandidates) {
+            if (n == selected.length) {
+                break;
+            }
+            if (candidate == base) {
+                continue;
+            }
+            double toBase = similarity(vectors, base * DIMENSION, candidate);
+            boolean keep = true;
+            for (int i = 0; i < n && keep; i++) {
+                keep = similarity(vectors, selected[i] * DIMENSION, candidate) < toBase;
+            }
+            if (keep) {
+                selected[n++] = candidate;
+            }
+        }
+        return Arrays.copyOf(selected, n);
+    }
+
+    private void connect(int from, int to, int layer) {
+        int[] fromLinks = links[from][layer];
+        int count = fromLinks[0];
+        if (count < maxLinks(layer)) {
+            fromLinks[++count] = to;
+            fromLinks[0] = count;
+            return;
+        }
+        int[] candidates = Arrays.copyOfRange(fromLinks, 1, count + 2);
+        candidates[count] = to;
+        int[] selected = selectNeighbors(from, sortBySimilarity(from, candidates), maxLinks(layer));
+        setLinks(from, layer, selected, selected.length);
+    }
+
+    private int[] sortBySimilarity(int base, int[] candidates) {
+        double[] similarities = new double[candidates.length];
+        Integer[] order = new Integer[candidates.length];
+        for (int i = 0; i < candidates.length; i++) {
+            similarities[i] = similarity(vectors, base * DIMENSION, candidates[i]);
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(similarities[b], similarities[a]));
+        int[] sorted = new int[candidates.length];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = candidates[order[i]];
+        }
+        return sorted;
+    }
+
+    private void setLinks(int slot, int layer, int[] neighbors, int count) {
+        int[] target = links[slot][layer];
+        System.arraycopy(neighbors, 0, target, 1, count);
+        target[0] = count;
+    }
+
+    private boolean containsLink(int[] nodeLinks, int slot) {
+        for (int i = 1; i <= nodeLinks[0]; i++) {
+            if (nodeLinks[i] == slot) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    //삭제 후 재사용된 슬롯은 더 낮은 층에만 있을 수 있으므로, 남아 있는 링크는 층까지 확인한다.
+    private boolean reachable(int slot, int layer) {
+        return contains(slot) && levels[slot] >= layer;
+    }
+
+    private void resetEntryPoint() {
+        entryPoint = -1;
+        maxLevel = -1;
+        for (int slot = 0; slot < present.length; slot++) {
+            if (present[slot] && levels[slot] > maxLevel) {
+                entryPoint = slot;
+                maxLevel = levels[slot];
+            }
+        }
+    }
+
+    private int maxLinks(int layer) {
+        return layer == 0 ? maxM0 : m;
+    }
+
+    private double similarity(double[] query, int queryOffset, int slot) {
+        return SimilarityUtils.dot(query, queryOffset, vectors, slot * DIMENSION);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= present.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, Math.max(16, present.length * 2));
+        vectors = Arrays.copyOf(vectors, newCapacity * DIMENSION);
+        ids = Arrays.copyOf(ids, newCapacity);
+        levels = Arrays.copyOf(levels, newCapacity);
+        links = Arrays.copyOf(links, newCapacity);
+        present = Arrays.copyOf(present, newCapacity);
+    }
+
+    // 검색 중 쓰는 방문 표시와 두 개의 primitive 힙(후보: 최대 힙, 결과: 최소 힙)
+    private static class SearchContext {
+        int[] visited = new int[0];
+        int epoch;
+        double[] candidateSimilarities = new double[16];
+        int[] candidateSlots = new int[16];
+        int candidateCount;
+        double[] resultHeapSimilarities = new double[16];
+        int[] resultHeapSlots = new int[16];
+        int resultCount;
+        double[] resultSimilarities = new double[16];
+        int[] resultSlots = new int[16];
+
+        void reset(int capacity, int ef) {
+            if (visited.length < capacity) {
+                visited = new int[capacity];
+                epoch = 0;
+            }
+            if (++epoch == Integer.MAX_VALUE) {
+                Arrays.fill(visited, 0);
+                epoch = 1;
+            }
+            candidateCount = 0;
+            resultCount = 0;
+            if (resultHeapSlots.length < ef + 2) {
+                resultHeapSimilarities = new double[ef + 2];
+                resultHeapSlots = new int[ef + 2];
+                resultSimilarities = new double[ef + 2];
+                resultSlots = new int[ef + 2];
+            }
+        }
+
+        boolean visit(int slot) {
+            if (visited[slot] == epoch) {
+                return false;
+            }
+            visited[slot] = epoch;
+            return true;
+        }
+
+        void pushCandidate(double similarity, int slot) {
+            if (candidateCount == candidateSlots.length) {
+                candidateSimilarities = Arrays.copyOf(candidateSimilarities, candidateCount * 2);
+                candidateSlots = Arrays.copyOf(candidateSlots, candidateCount * 2);
+            }
+            int index = candidateCount++;
+            while (index > 0) {
+                int parent = (index - 1) >>> 1;
+                if (candidateSimilarities[parent] >= similarity) {
+                    break;
+                }
+                candidateSimilarities[index] = candidateSimilarities[parent];
+                candidateSlots[index] = candidateSlots[parent];
+                index = parent;
+            }
+            candidateSimilarities[index] = similarity;
+            candidateSlots[index] = slot;
+        }
+
+        int popCandidate() {
+            int top = candidateSlots[0];
+            candidateCount--;
+            double similarity = candidateSimilarities[candidateCount];
+            int slot = candidateSlots[candidateCount];
+            int index = 0;
+            while (true) {
+                int child = 2 * index + 1;
+                if (child >= candidateCount) {
+                    break;
+                }
+                if (child + 1 < candidateCount && candidateSimilarities[child + 1] > candidateSimilarities[child]) {
+                    child++;
+                }
+                if (candidateSimilarities[child] <= similarity) {
+                    break;
+                }
+                candidateSimilarities[index] = candidateSimilarities[child];
+                candidateSlots[index] = candidateSlots[child];
+                index = child;
+            }
+            candidateSimilarities[index] = similarity;
+            candidateSlots[index] = slot;
+            return top;
+        }
+
+        double worstResult() {
+            return resultHeapSimilarities[0];
+        }
+
+        void pushResult(double similarity, int slot) {
+            int index = resultCount++;
+            while (index > 0) {
+                int parent = (index - 1) >>> 1;
+                if (resultHeapSimilarities[parent] <= similarity) {
+                    break;
+                }
+                resultHeapSimilarities[index] = resultHeapSimilarities[parent];
+                resultHeapSlots[index] = resultHeapSlots[parent];
+                index = parent;
+            }
+            resultHeapSimilarities[index] = similarity;
+            resultHeapSlots[index] = slot;
+        }
+
+        void popResult() {
+            resultCount--;
+            double similarity = resultHeapSimilarities[resultCount];
+            int slot = resultHeapSlots[resultCount];
+            int index = 0;
+            while (true) {
+                int child = 2 * index + 1;
+                if (child >= resultCount) {
+                    break;
+                }
+                if (child + 1 < resultCount && resultHeapSimilarities[child + 1] < resultHeapSimilarities[child]) {
+                    child++;
+                }
+                if (resultHeapSimilarities[child] >= similarity) {
+                    break;
+                }
+                resultHeapSimilarities[index] = resultHeapSimilarities[child];
+                resultHeapSlots[index] = resultHeapSlots[child];
+                index = child;
+            }
+            resultHeapSimilarities[index] = similarity;
+            resultHeapSlots[index] = slot;
+        }
+
+        int drainResultsDescending() {
+            int count = resultCount;
+            for (int i = count - 1; i >= 0; i--) {
+                resultSimilarities[i] = resultHeapSimilarities[0];
+                resultSlots[i] = resultHeapSlots[0];
+                popResult();
+            }
+            return count;
+        }
+    }
+}
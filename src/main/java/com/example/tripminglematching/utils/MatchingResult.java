@@ -0,0 +1,35 @@
+package com.example.tripminglematching.utils;
+
+import java.util.Arrays;
+
+// StableMatcher의 결과. 유저 인덱스별로 매칭된 게시물 인덱스를 유저의 선호 순서대로 들고 있다.
+public final class MatchingResult {
+
+    private final int users;
+    private final int perUser;
+    private final int[] matches;
+    private final int[] matchCounts;
+
+    MatchingResult(int users, int perUser, int[] matches, int[] matchCounts) {
+        this.users = users;
+        this.perUser = perUser;
+        this.matches = matches;
+        this.matchCounts = matchCounts;
+    }
+
+    public int users() {
+        return users;
+    }
+
+    public int matchCount(int user) {
+        return matchCounts[user];
+    }
+
+    public int boardAt(int user, int rank) {
+        return matches[user * perUser + rank];
+    }
+
+    public int[] boardsOf(int user) {
+        return Arrays.copyOfRange(matches, user * perUser, user * perUser + matchCounts[user]);
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.tripminglematching.utils;
+
+// 계산에 쓸 벡터들을 빈 슬롯 없이 이어 붙인 사본. i번째 벡터는 vectors[i * DIMENSION]부터 시작한다.
+// codes가 있으면 squaredNorms[i] >= 0인 벡터는 codes[i * DIMENSION]부터 정수 코드가 있다. (QuantizedKernel)
+public record PackedVectors(double[] vectors, int[] slots, long[] ids, byte[] codes, int[] squaredNorms) {
+
+    public PackedVectors(double[] vectors, int[] slots, long[] ids) {
+        this(vectors, slots, ids, null, null);
+    }
+
+    //두 벡터 모두 코드가 있으면 정수 내적, 아니면 double 내적
+    public double similarity(int i, PackedVectors other, int j, QuantizedKernel kernel) {
+        if (codes != null && other.codes != null && squaredNorms[i] >= 0 && other.squaredNorms[j] >= 0) {
+            return QuantizedKernel.similarity(kernel.dot(codes, offset(i), other.codes, offset(j)),
+                squaredNorms[i], other.squaredNorms[j]);
+        }
+        return SimilarityUtils.dot(vectors, offset(i), other.vectors, offset(j));
+    }
+
+    public int size() {
+        return slots.length;
+    }
+
+    public static int offset(int index) {
+        return index * FeatureVector.DIMENSION;
+    }
+}
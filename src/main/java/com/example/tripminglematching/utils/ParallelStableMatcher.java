@@ -0,0 +1,234 @@
+package com.example.tripminglematching.utils;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+import com.example.tripminglematching.utils.StableMatcher.ScoreFunction;
+
+// StableMatcher를 라운드 단위로 병렬화한 버전.
+// 한 라운드에서 빈자리가 있는 유저는 모두 동시에 빈자리 수만큼 다음 게시물에 제안하고,
+// 제안을 받은 게시물은 각자 자기 힙만 고쳐서 동시에 수락/거절한다.
+// 유저가 제안하는 게일-섀플리의 결과는 제안 순서와 상관없이 유저에게 가장 유리한 안정 매칭 하나로 같으므로,
+// 결과는 StableMatcher와 같고 스레드 수와 상관없이 항상 같다.
+public final class ParallelStableMatcher {
+
+    //작업이 이보다 작으면 나누지 않고 현재 스레드에서 돈다.
+    private static final int SEQUENTIAL_THRESHOLD = 256;
+
+    private final int users;
+    private final int boards;
+    private final int perUser;
+    private final ForkJoinPool pool;
+    private final ProposalOrder proposalOrder;
+    private final BoardHeaps boardHeaps;
+
+    //유저별로 게시물이 들고 있는 자리 수
+    private final int[] heldCounts;
+    private final boolean[] exhausted;
+
+    //이번 라운드에 제안한 유저들과 유저별 제안 (유저 * perUser 칸)
+    private int[] active;
+    private int activeCount;
+    private final int[] proposalBoards;
+    private final double[] proposalScores;
+    private final int[] proposalCounts;
+
+    //게시물별로 모은 제안. bucketStarts[board] ~ bucketEnds[board]
+    private final int[] bucketStarts;
+    private final int[] bucketEnds;
+    private int[] bucketUsers;
+    private double[] bucketScores;
+    private int[] rejectedUsers;
+    private final int[] touchedBoards;
+    private int touchedCount;
+    private final boolean[] queued;
+
+    private ParallelStableMatcher(int users, int boards, int perUser, int capacity, ScoreFunction scoreFunction,
+                                  ForkJoinPool pool) {
+        this.users = users;
+        this.boards = boards;
+        this.perUser = perUser;
+        this.pool = pool;
+        this.proposalOrder = new ProposalOrder(users, boards, scoreFunction);
+        this.boardHeaps = new BoardHeaps(boards, capacity);
+        this.heldCounts = new int[users];
+        this.exhausted = new boolean[users];
+        this.active = new int[users];
+        this.proposalBoards = new int[users * perUser];
+        this.proposalScores = new double[users * perUser];
+        this.proposalCounts = new int[users];
+        this.bucketStarts = new int[boards];
+        this.bucketEnds = new int[boards];
+        this.bucketUsers = new int[0];
+        this.bucketScores = new double[0];
+        this.rejectedUsers = new int[0];
+        this.touchedBoards = new int[boards];
+        this.queued = new boolean[users];
+    }
+
+    public static MatchingResult match(int users, int boards, int perUser, int capacity, ScoreFunction scoreFunction,
+                                       ForkJoinPool pool) {
+        return new ParallelStableMatcher(users, boards, perUser, capacity, scoreFunction, pool).run();
+    }
+
+    private MatchingResult run() {
+        for (int user = 0; user < users; user++) {
+            active[user] = user;
+        }
+        activeCount = perUser > 0 ? users : 0;
+        while (activeCount > 0) {
+            forEach(activeCount, i -> propose(active[i]));
+            int proposals = bucket();
+            forEach(touchedCount, i -> resolve(touchedBoards[i]));
+            collectRejected(proposals);
+        }
+        return result();
+    }
+
+    //빈자리 수만큼 다음 게시물에 제안한다. 일단 자리를 잡은 것으로 세고, 거절되면 collectRejected에서 돌려준다.
+    private void propose(int user) {
+        int base = user * perUser;
+        int count = 0;
+        while (heldCounts[user] + count < perUser) {
+            int position = proposalOrder.next(user);
+            if (position < 0) {
+                exhausted[user] = true;
+                break;
+            }
+            proposalBoards[base + count] = proposalOrder.board(position);
+            proposalScores[base + count] = proposalOrder.score(position);
+            count++;
+        }
+        proposalCounts[user] = count;
+        heldCounts[user] += count;
+    }
+
+    //제안을 게시물별로 모은다. 같은 게시물 안에서는 유저 인덱스 순서다. (유저는 한 라운드에 같은 게시물에 두 번 제안하지 않는다.)
+    private int bucket() {
+        touchedCount = 0;
+        int proposals = 0;
+        for (int i = 0; i < activeCount; i++) {
+            int user = active[i];
+            for (int k = 0; k < proposalCounts[user]; k++) {
+                int board = proposalBoards[user * perUser + k];
+                if (bucketEnds[board]++ == 0) {
+                    touchedBoards[touchedCount++] = board;
+                }
+                proposals++;
+            }
+        }
+        if (bucketUsers.length < proposals) {
+            bucketUsers = new int[proposals];
+            bucketScores = new double[proposals];
+            rejectedUsers = new int[proposals];
+        }
+        //bucketEnds에 센 개수를 누적해서 시작 위치를 정한다. 건드린 게시물만 게시물 순서로 훑는다.
+        Arrays.sort(touchedBoards, 0, touchedCount);
+        int offset = 0;
+        for (int i = 0; i < touchedCount; i++) {
+            int board = touchedBoards[i];
+            int count = bucketEnds[board];
+            bucketStarts[board] = offset;
+            bucketEnds[board] = offset;
+            offset += count;
+        }
+        for (int i = 0; i < activeCount; i++) {
+            int user = active[i];
+            for (int k = 0; k < proposalCounts[user]; k++) {
+                int board = proposalBoards[user * perUser + k];
+                int position = bucketEnds[board]++;
+                bucketUsers[position] = user;
+                bucketScores[position] = proposalScores[user * perUser + k];
+            }
+        }
+        return proposals;
+    }
+
+    //게시물 하나에 온 제안을 모두 처리한다. 제안마다 밀려난 유저가 하나 이하이므로 같은 위치에 적는다.
+    private void resolve(int board) {
+        int end = bucketEnds[board];
+        for (int position = bucketStarts[board]; position < end; position++) {
+            int user = bucketUsers[position];
+            double score = bucketScores[position];
+            if (!boardHeaps.isFull(board)) {
+                boardHeaps.push(board, score, user);
+                rejectedUsers[position] = -1;
+            } else if (StableMatcher.prefers(score, user, boardHeaps.rootScore(board), boardHeaps.rootUser(board))) {
+                rejectedUsers[position] = boardHeaps.rootUser(board);
+                boardHeaps.replaceRoot(board, score, user);
+            } else {
+                rejectedUsers[position] = user;
+            }
+        }
+    }
+
+    //거절된 자리를 돌려주고, 빈자리가 생겼고 더 제안할 곳이 있는 유저를 다음 라운드에 넣는다.
+    private void collectRejected(int proposals) {
+        for (int i = 0; i < touchedCount; i++) {
+            int board = touchedBoards[i];
+            bucketEnds[board] = 0;
+        }
+        int nextCount = 0;
+        for (int position = 0; position < proposals; position++) {
+            int user = rejectedUsers[position];
+            if (user < 0) {
+                continue;
+            }
+            heldCounts[user]--;
+            if (!exhausted[user] && !queued[user]) {
+                queued[user] = true;
+                active[nextCount++] = user;
+            }
+        }
+        //유저 인덱스 순서로 맞춰 두면 다음 라운드의 bucket 순서도 스레드와 상관없이 같다.
+        Arrays.sort(active, 0, nextCount);
+        for (int i = 0; i < nextCount; i++) {
+            queued[active[i]] = false;
+        }
+        activeCount = nextCount;
+    }
+
+    //게시물 힙에서 유저별 매칭을 모으고, 각 유저의 선호 순서로 정렬한다.
+    private MatchingResult result() {
+        int[] matches = new int[users * perUser];
+        double[] scores = new double[users * perUser];
+        int[] matchCounts = new int[users];
+        for (int board = 0; board < boards; board++) {
+            for (int i = 0; i < boardHeaps.size(board); i++) {
+                int user = boardHeaps.userAt(board, i);
+                int position = user * perUser + matchCounts[user]++;
+                matches[position] = board;
+                scores[position] = boardHeaps.scoreAt(board, i);
+            }
+        }
+        forEach(users, user -> sortByPreference(matches, scores, user * perUser, matchCounts[user]));
+        return new MatchingResult(users, perUser, matches, matchCounts);
+    }
+
+    private static void sortByPreference(int[] matches, double[] scores, int base, int count) {
+        for (int i = base + 1; i < base + count; i++) {
+            int board = matches[i];
+            double score = scores[i];
+            int j = i;
+            while (j > base && StableMatcher.prefers(score, board, scores[j - 1], matches[j - 1])) {
+                matches[j] = matches[j - 1];
+                scores[j] = scores[j - 1];
+                j--;
+            }
+            matches[j] = board;
+            scores[j] = score;
+        }
+    }
+
+    private void forEach(int count, IntConsumer action) {
+        if (count < SEQUENTIAL_THRESHOLD) {
+            for (int i = 0; i < count; i++) {
+                action.accept(i);
+            }
+            return;
+        }
+        pool.submit(() -> IntStream.range(0, count).parallel().forEach(action)).join();
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.tripminglematching.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+// 선호도 배열 직렬화.
+// 바이너리 v1 : [MAGIC][VERSION][count:int32] 뒤에 (id:int64, similarity:float32) * count, 빅엔디안. 항목당 12바이트.
+// JSON      : 기존 형식 그대로 [{"<id>":<similarity>}, ...] 를 JSON 문자열로 한 번 더 감싼 값.
+// 읽는 쪽(API 서버)은 첫 바이트(MAGIC)로 형식을 구분하므로 두 형식이 섞여 있어도 된다. JSON 문자열은 '"'로 시작한다.
+public final class PreferenceCodec {
+
+    public static final byte MAGIC = (byte) 0xB7;
+    public static final byte VERSION = 1;
+
+    private static final int HEADER_SIZE = 6;
+    private static final int ENTRY_SIZE = 12;
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private PreferenceCodec() {
+    }
+
+    public static byte[] encodeBinary(long[] ids, double[] similarities, int count) {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + count * ENTRY_SIZE);
+        buffer.put(MAGIC).put(VERSION).putInt(count);
+        for (int i = 0; i < count; i++) {
+            buffer.putLong(ids[i]).putFloat((float) similarities[i]);
+        }
+        return buffer.array();
+    }
+
+    public static byte[] encodeJson(long[] ids, double[] similarities, int count) {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(count * 32 + 2);
+            try (JsonGenerator generator = JSON_FACTORY.createGenerator(out)) {
+                generator.writeStartArray();
+                for (int i = 0; i < count; i++) {
+                    generator.writeStartObject();
+                    generator.writeNumberField(String.valueOf(ids[i]), similarities[i]);
+                    generator.writeEndObject();
+                }
+                generator.writeEndArray();
+            }
+            //RedisTemplate의 JSON 직렬화기가 문자열을 저장하던 것과 같은 모양으로 감싼다.
+            ByteArrayOutputStream wrapped = new ByteArrayOutputStream(out.size() + 16);
+            try (JsonGenerator generator = JSON_FACTORY.createGenerator(wrapped)) {
+                generator.writeString(out.toString(StandardCharsets.UTF_8));
+            }
+            return wrapped.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.tripminglematching.utils;
+
+import java.util.Arrays;
+
+import com.example.tripminglematching.utils.StableMatcher.ScoreFunction;
+
+// 유저별로 아직 제안하지 않은 게시물을 선호 순서대로 꺼내 준다.
+// 선호 순서는 CHUNK개씩 필요할 때만 만든다. 유저마다 자기 칸만 쓰므로 서로 다른 유저는 동시에 꺼내도 된다.
+final class ProposalOrder {
+
+    private static final int CHUNK = 16;
+
+    private final int boards;
+    private final ScoreFunction scoreFunction;
+
+    private final int[] chunkBoards;
+    private final double[] chunkScores;
+    private final int[] chunkSizes;
+    private final int[] chunkPositions;
+    private final int[] proposedCounts;
+    private final double[] lastScores;
+    private final int[] lastBoards;
+
+    ProposalOrder(int users, int boards, ScoreFunction scoreFunction) {
+        this.boards = boards;
+        this.scoreFunction = scoreFunction;
+        this.chunkBoards = new int[users * CHUNK];
+        this.chunkScores = new double[users * CHUNK];
+        this.chunkSizes = new int[users];
+        this.chunkPositions = new int[users];
+        this.proposedCounts = new int[users];
+        this.lastScores = new double[users];
+        this.lastBoards = new int[users];
+        //아직 제안하지 않은 유저는 lastBoards가 -1이다. 점수는 NaN일 수 있으므로(영벡터) 시작 표시로 쓰지 않는다.
+        Arrays.fill(lastBoards, -1);
+    }
+
+    //다음에 제안할 게시물이 들어 있는 위치. 더 제안할 곳이 없으면 -1
+    int next(int user) {
+        if (chunkPositions[user] == chunkSizes[user] && !refill(user)) {
+            //EXCLUDED인 게시물만 남았어도 더 제안할 곳은 없다.
+            proposedCounts[user] = boards;
+            return -1;
+        }
+        int position = user * CHUNK + chunkPositions[user]++;
+        proposedCounts[user]++;
+        lastScores[user] = chunkScores[position];
+        lastBoards[user] = chunkBoards[position];
+        return position;
+    }
+
+    int board(int position) {
+        return chunkBoards[position];
+    }
+
+    double score(int position) {
+        return chunkScores[position];
+    }
+
+    boolean hasMore(int user) {
+        return proposedCounts[user] < boards;
+    }
+
+    //마지막으로 제안한 게시물 다음 순서의 게시물 CHUNK개를 골라 정렬해 둔다.
+    private boolean refill(int user) {
+        int base = user * CHUNK;
+        int size = 0;
+        double lastScore = lastScores[user];
+        int lastBoard = lastBoards[user];
+        boolean started = lastBoard >= 0;
+        for (int board = 0; board < boards; board++) {
+            double score = scoreFunction.score(user, board);
+            if (score == StableMatcher.EXCLUDED || (started && !StableMatcher.prefers(lastScore, lastBoard, score, board))) {
+                continue;
+            }
+            if (size == CHUNK && !StableMatcher.prefers(score, board, chunkScores[base + size - 1], chunkBoards[base + size - 1])) {
+                continue;
+            }
+            int position = Math.min(size, CHUNK - 1);
+            while (position > 0 && StableMatcher.prefers(score, board, chunkScores[base + position - 1], chunkBoards[base + position - 1])) {
+                chunkScores[base + position] = chunkScores[base + position - 1];
+                chunkBoards[base + position] = chunkBoards[base + position - 1];
+                position--;
+            }
+            chunkScores[base + position] = score;
+            chunkBoards[base + position] = board;
+            size = Math.min(size + 1, CHUNK);
+        }
+        chunkSizes[user] = size;
+        chunkPositions[user] = 0;
+        return size > 0;
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.tripminglematching.utils;
+
+// 응답이 정수이면 특성 값은 (정수 코드) * (차원별 가중치)이므로, 벡터를 차원당 1바이트 코드로 들고 정수만으로 내적할 수 있다.
+// 차원별 (코드 x 코드 x 가중치^2) 곱은 미리 만든 표에서 꺼낸다. 내적과 노름 제곱은 정수라서 오차가 없고,
+// 같은 값을 정규화하지 않은 double 특성 배열로 계산한 내적/노름 제곱과 비트 단위로 같다.
+// 유사도는 dot / sqrt(normA^2 * normB^2) 한 번으로 만든다.
+public final class QuantizedKernel {
+
+    //게시물 벡터는 작성자 응답에 선호 조건을 더해서 |코드|가 6까지 간다.
+    public static final int CODE_LIMIT = 8;
+    private static final int CODES = 2 * CODE_LIMIT + 1;
+
+    private final double[] weights;
+    private final int[] products;
+
+    public QuantizedKernel(double[] weights) {
+        if (weights.length != FeatureVector.DIMENSION) {
+            throw new IllegalArgumentException("weights must have " + FeatureVector.DIMENSION + " dimensions");
+        }
+        this.weights = weights.clone();
+        this.products = new int[FeatureVector.DIMENSION * CODES * CODES];
+        for (int d = 0; d < FeatureVector.DIMENSION; d++) {
+            if (weights[d] != Math.rint(weights[d])) {
+                throw new IllegalArgumentException("weights must be integers : " + weights[d]);
+            }
+            int squared = (int) (weights[d] * weights[d]);
+            for (int a = -CODE_LIMIT; a <= CODE_LIMIT; a++) {
+                for (int b = -CODE_LIMIT; b <= CODE_LIMIT; b++) {
+                    products[index(d, a, b)] = squared * a * b;
+                }
+            }
+        }
+    }
+
+    //특성 배열을 codes[offset]부터 코드로 적는다. 가중치의 정수배가 아닌 값이 있으면 false
+    public boolean encode(double[] features, byte[] codes, int offset) {
+        for (int d = 0; d < FeatureVector.DIMENSION; d++) {
+            double code = features[d] / weights[d];
+            if (code != Math.rint(code) || Math.abs(code) > CODE_LIMIT) {
+                return false;
+            }
+        }
+        for (int d = 0; d < FeatureVector.DIMENSION; d++) {
+            codes[offset + d] = (byte) (features[d] / weights[d]);
+        }
+        return true;
+    }
+
+    public int dot(byte[] a, int aOffset, byte[] b, int bOffset) {
+        int sum = 0;
+        for (int d = 0; d < FeatureVector.DIMENSION; d++) {
+            sum += products[index(d, a[aOffset + d], b[bOffset + d])];
+        }
+        return sum;
+    }
+
+    public int squaredNorm(byte[] codes, int offset) {
+        return dot(codes, offset, codes, offset);
+    }
+
+    //영벡터는 double 경로와 같이 NaN
+    public static double similarity(int dot, int squaredNormA, int squaredNormB) {
+        return dot / Math.sqrt((double) squaredNormA * squaredNormB);
+    }
+
+    public static int offset(int index) {
+        return index * FeatureVector.DIMENSION;
+    }
+
+    private static int index(int d, int a, int b) {
+        return (d * CODES + a + CODE_LIMIT) * CODES + b + CODE_LIMIT;
+    }
+}
@@ -3,6 +3,10 @@ package com.example.tripminglematching.utils;
 import java.util.List;
 
 public class SimilarityUtils {
+
+    // Vector API는 실행 시 --add-modules jdk.incubator.vector 가 주어진 경우에만 사용한다.
+    private static final boolean VECTOR_API_ENABLED = detectVectorApi();
+
     public static double cosineSimilarity(List<Double> vectorA, List<Double> vectorB) {
         if (vectorA.size() != vectorB.size()) {
             throw new IllegalArgumentException("Vectors must be of the same length");
@@ -20,4 +24,43 @@ public class SimilarityUtils {
 
         return dotProduct / (Math.sqrt(normA) * Math.sqrt(normB));
     }
+
+    public static double dot(double[] a, int aOffset, double[] b, int bOffset) {
+        if (VECTOR_API_ENABLED) {
+            return VectorizedDot.dot(a, aOffset, b, bOffset, FeatureVector.DIMENSION);
+        }
+        return scalarDot(a, aOffset, b, bOffset);
+    }
+
+    //VectorizedDot과 같은 순서로 더한다. LANES칸마다 같은 자리끼리 누산기에 모으고 마지막에 (0+1)+(2+3)으로 합친다.
+    //그래서 Vector API를 쓰든 안 쓰든 유사도가 비트까지 같고, 상위 K개와 동점 처리도 같다.
+    static double scalarDot(double[] a, int aOffset, double[] b, int bOffset) {
+        double sum0 = 0.0;
+        double sum1 = 0.0;
+        double sum2 = 0.0;
+        double sum3 = 0.0;
+        int i = 0;
+        for (; i + VectorizedDot.LANES <= FeatureVector.DIMENSION; i += VectorizedDot.LANES) {
+            sum0 += a[aOffset + i] * b[bOffset + i];
+            sum1 += a[aOffset + i + 1] * b[bOffset + i + 1];
+            sum2 += a[aOffset + i + 2] * b[bOffset + i + 2];
+            sum3 += a[aOffset + i + 3] * b[bOffset + i + 3];
+        }
+        double sum = (sum0 + sum1) + (sum2 + sum3);
+        for (; i < FeatureVector.DIMENSION; i++) {
+            sum += a[aOffset + i] * b[bOffset + i];
+        }
+        return sum;
+    }
+
+    private static boolean detectVectorApi() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return false;
+        }
+        try {
+            return VectorizedDot.supported();
+        } catch (Throwable e) {
+            return false;
+        }
+    }
 }
@@ -0,0 +1,127 @@
+package com.example.tripminglematching.utils;
+
+import java.util.Arrays;
+
+// 슬롯 번호 집합. BLOCK_BITS 단위 블록으로 나누고 비트가 하나도 없는 블록은 만들지 않는다.
+// 속성 값별 유저 집합처럼 드문드문한 집합도 차지하는 메모리와 교집합 비용이 채워진 블록 수에 비례한다.
+public final class SlotBitmap {
+
+    private static final int BLOCK_SHIFT = 12;
+    private static final int BLOCK_BITS = 1 << BLOCK_SHIFT;
+    private static final int BLOCK_WORDS = BLOCK_BITS >>> 6;
+
+    private long[][] blocks;
+    private int[] blockCounts;
+
+    public SlotBitmap() {
+        this.blocks = new long[0][];
+        this.blockCounts = new int[0];
+    }
+
+    public boolean get(int slot) {
+        int block = slot >>> BLOCK_SHIFT;
+        if (block >= blocks.length || blocks[block] == null) {
+            return false;
+        }
+        return (blocks[block][(slot & (BLOCK_BITS - 1)) >>> 6] & (1L << slot)) != 0;
+    }
+
+    public void set(int slot) {
+        int block = slot >>> BLOCK_SHIFT;
+        if (block >= blocks.length) {
+            int length = Math.max(block + 1, blocks.length << 1);
+            blocks = Arrays.copyOf(blocks, length);
+            blockCounts = Arrays.copyOf(blockCounts, length);
+        }
+        if (blocks[block] == null) {
+            blocks[block] = new long[BLOCK_WORDS];
+        }
+        int word = (slot & (BLOCK_BITS - 1)) >>> 6;
+        if ((blocks[block][word] & (1L << slot)) == 0) {
+            blocks[block][word] |= 1L << slot;
+            blockCounts[block]++;
+        }
+    }
+
+    public void clear(int slot) {
+        int block = slot >>> BLOCK_SHIFT;
+        if (block >= blocks.length || blocks[block] == null) {
+            return;
+        }
+        int word = (slot & (BLOCK_BITS - 1)) >>> 6;
+        if ((blocks[block][word] & (1L << slot)) != 0) {
+            blocks[block][word] &= ~(1L << slot);
+            if (--blockCounts[block] == 0) {
+                blocks[block] = null;
+            }
+        }
+    }
+
+    public int cardinality() {
+        int count = 0;
+        for (int blockCount : blockCounts) {
+            count += blockCount;
+        }
+        return count;
+    }
+
+    //실제로 잡고 있는 long 개수 (압축 효과 확인용)
+    public int wordCount() {
+        int count = 0;
+        for (long[] block : blocks) {
+            count += block == null ? 0 : BLOCK_WORDS;
+        }
+        return count;
+    }
+
+    //this를 this ∪ other로 바꾼다.
+    public SlotBitmap or(SlotBitmap other) {
+        if (other.blocks.length > blocks.length) {
+            blocks = Arrays.copyOf(blocks, other.blocks.length);
+            blockCounts = Arrays.copyOf(blockCounts, other.blocks.length);
+        }
+        for (int block = 0; block < other.blocks.length; block++) {
+            long[] source = other.blocks[block];
+            if (source == null) {
+                continue;
+            }
+            if (blocks[block] == null) {
+                blocks[block] = source.clone();
+                blockCounts[block] = other.blockCounts[block];
+                continue;
+            }
+            int count = 0;
+            for (int word = 0; word < BLOCK_WORDS; word++) {
+                blocks[block][word] |= source[word];
+                count += Long.bitCount(blocks[block][word]);
+            }
+            blockCounts[block] = count;
+        }
+        return this;
+    }
+
+    //this를 this ∩ other로 바꾼다. 한쪽이라도 비어 있는 블록은 훑지 않는다.
+    public SlotBitmap and(SlotBitmap other) {
+        for (int block = 0; block < blocks.length; block++) {
+            if (blocks[block] == null) {
+                continue;
+            }
+            long[] source = block < other.blocks.length ? other.blocks[block] : null;
+            if (source == null) {
+                blocks[block] = null;
+                blockCounts[block] = 0;
+                continue;
+            }
+            int count = 0;
+            for (int word = 0; word < BLOCK_WORDS; word++) {
+                blocks[block][word] &= source[word];
+                count += Long.bitCount(blocks[block][word]);
+            }
+            blockCounts[block] = count;
+            if (count == 0) {
+                blocks[block] = null;
+            }
+        }
+        return this;
+    }
+}
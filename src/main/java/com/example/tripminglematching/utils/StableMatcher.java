@@ -0,0 +1,117 @@
+package com.example.tripminglematching.utils;
+
+// 유저가 제안하는 다대다 게일-섀플리. 유저와 게시물은 0부터 시작하는 dense 인덱스로 다룬다.
+// 유저는 최대 perUser개, 게시물은 최대 capacity명까지 매칭된다.
+// 양쪽 모두 점수가 높은 쪽을 선호하고, 점수가 같으면 인덱스가 작은 쪽을 선호한다. 점수가 EXCLUDED인 쌍은 매칭하지 않는다.
+// 유저의 선호 순서는 ProposalOrder가 필요할 때만 만들고, 게시물의 선호 순위는 점수를 그대로 비교해서 순위표를 만들지 않는다.
+public final class StableMatcher {
+
+    public interface ScoreFunction {
+        double score(int user, int board);
+    }
+
+    public static final double EXCLUDED = Double.NEGATIVE_INFINITY;
+
+    private final int users;
+    private final int perUser;
+    private final ProposalOrder proposalOrder;
+
+    //유저별 매칭된 게시물 (선호 순서)
+    private final int[] matches;
+    private final int[] matchCounts;
+
+    private final BoardHeaps boardHeaps;
+
+    private int[] queue;
+    private int queueHead;
+    private int queueSize;
+
+    private StableMatcher(int users, int boards, int perUser, int capacity, ScoreFunction scoreFunction) {
+        this.users = users;
+        this.perUser = perUser;
+        this.proposalOrder = new ProposalOrder(users, boards, scoreFunction);
+        this.matches = new int[users * perUser];
+        this.matchCounts = new int[users];
+        this.boardHeaps = new BoardHeaps(boards, capacity);
+        this.queue = new int[Math.max(16, users)];
+    }
+
+    public static MatchingResult match(int users, int boards, int perUser, int capacity, ScoreFunction scoreFunction) {
+        return new StableMatcher(users, boards, perUser, capacity, scoreFunction).run();
+    }
+
+    private MatchingResult run() {
+        for (int user = 0; user < users; user++) {
+            enqueue(user);
+        }
+        while (queueSize > 0) {
+            int user = dequeue();
+            while (matchCounts[user] < perUser) {
+                int position = proposalOrder.next(user);
+                if (position < 0) {
+                    break;
+                }
+                int board = proposalOrder.board(position);
+                double score = proposalOrder.score(position);
+                if (!boardHeaps.isFull(board)) {
+                    boardHeaps.push(board, score, user);
+                    addMatch(user, board);
+                    break;
+                }
+                if (prefers(score, user, boardHeaps.rootScore(board), boardHeaps.rootUser(board))) {
+                    int rejected = boardHeaps.rootUser(board);
+                    boardHeaps.replaceRoot(board, score, user);
+                    removeMatch(rejected, board);
+                    addMatch(user, board);
+                    enqueue(rejected);
+                    break;
+                }
+            }
+            if (matchCounts[user] < perUser && proposalOrder.hasMore(user)) {
+                enqueue(user);
+            }
+        }
+        return new MatchingResult(users, perUser, matches, matchCounts);
+    }
+
+    //점수가 높을수록, 같으면 인덱스가 작을수록 앞선다. NaN은 Double.compare 기준으로 가장 앞선다.
+    public static boolean prefers(double score, int index, double otherScore, int otherIndex) {
+        int compared = Double.compare(score, otherScore);
+        return compared > 0 || (compared == 0 && index < otherIndex);
+    }
+
+    private void addMatch(int user, int board) {
+        matches[user * perUser + matchCounts[user]++] = board;
+    }
+
+    private void removeMatch(int user, int board) {
+        int base = user * perUser;
+        int count = matchCounts[user];
+        for (int i = 0; i < count; i++) {
+            if (matches[base + i] == board) {
+                System.arraycopy(matches, base + i + 1, matches, base + i, count - i - 1);
+                matchCounts[user] = count - 1;
+                return;
+            }
+        }
+    }
+
+    private void enqueue(int user) {
+        if (queueSize == queue.length) {
+            int[] grown = new int[queue.length * 2];
+            for (int i = 0; i < queueSize; i++) {
+                grown[i] = queue[(queueHead + i) % queue.length];
+            }
+            queue = grown;
+            queueHead = 0;
+        }
+        queue[(queueHead + queueSize++) % queue.length] = user;
+    }
+
+    private int dequeue() {
+        int user = queue[queueHead];
+        queueHead = (queueHead + 1) % queue.length;
+        queueSize--;
+        return user;
+    }
+}
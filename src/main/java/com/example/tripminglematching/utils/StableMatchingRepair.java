@@ -0,0 +1,389 @@
+package com.example.tripminglematching.utils;
+
+import java.util.Arrays;
+
+import com.example.tripminglematching.utils.StableMatcher.ScoreFunction;
+
+// 이전 안정 매칭에서 시작해 바뀐 부분만 다시 맞춘다.
+// 양쪽이 같은 점수로 선호하므로 (점수 내림차순, 유저 인덱스, 게시물 인덱스) 순서가 모든 쌍의 전체 순서가 되고,
+// 안정 매칭은 이 순서로 자리가 있으면 받아들이는 greedy 결과 하나뿐이다. 즉 StableMatcher의 결과와 같다.
+// 이 순서에서 가장 앞선 blocking pair를 하나씩 해소하면 그 쌍은 항상 최종 결과에 들어가므로, 바뀐 쌍 수만큼만 진행하고 끝난다.
+// blocking pair 후보는 상태가 바뀐 유저/게시물(dirty)만 다시 훑어서 찾는다. 한 번 훑는 비용은 게시물 수 또는 유저 수이다.
+public final class StableMatchingRepair {
+
+    private final int users;
+    private final int boards;
+    private final int perUser;
+    private final int capacity;
+    private final ScoreFunction scoreFunction;
+
+    //유저별 매칭 (순서 없음)
+    private final int[] matches;
+    private final double[] matchScores;
+    private final int[] matchCounts;
+
+    //게시물별 최대 힙. 루트가 가장 뒤 순서의 쌍이다.
+    private final int[] heapUsers;
+    private final double[] heapScores;
+    private final int[] heapSizes;
+
+    //blocking pair 후보 최대 힙. agent가 0 이상이면 유저, 음수면 -(게시물 + 1)이 다시 훑을 대상이다.
+    private double[] candidateScores = new double[64];
+    private int[] candidateUsers = new int[64];
+    private int[] candidateBoards = new int[64];
+    private int[] candidateAgents = new int[64];
+    private int candidateCount;
+
+    private StableMatchingRepair(int users, int boards, int perUser, int capacity, ScoreFunction scoreFunction) {
+        this.users = users;
+        this.boards = boards;
+        this.perUser = perUser;
+        this.capacity = capacity;
+        this.scoreFunction = scoreFunction;
+        this.matches = new int[users * perUser];
+        this.matchScores = new double[users * perUser];
+        this.matchCounts = new int[users];
+        this.heapUsers = new int[boards * capacity];
+        this.heapScores = new double[boards * capacity];
+        this.heapSizes = new int[boards];
+    }
+
+    // initialMatches는 유저별 perUser칸의 게시물 인덱스, initialCounts는 그중 채워진 칸 수이다. 용량을 넘지 않아야 한다.
+    // 이전 결과에서 점수가 바뀐 쌍은 빼고 넘기고, 그 쌍의 양쪽과 새로 생긴 유저/게시물을 dirty로 표시한다.
+    public static MatchingResult repair(int users, int boards, int perUser, int capacity, ScoreFunction scoreFunction,
+                                        int[] initialMatches, int[] initialCounts,
+                                        boolean[] dirtyUsers, boolean[] dirtyBoards) {
+        StableMatchingRepair repair = new StableMatchingRepair(users, boards, perUser, capacity, scoreFunction);
+        for (int user = 0; user < users; user++) {
+            for (int i = 0; i < initialCounts[user]; i++) {
+                int board = initialMatches[user * perUser + i];
+                repair.link(user, board, scoreFunction.score(user, board));
+            }
+        }
+        for (int user = 0; user < users; user++) {
+            if (dirtyUsers[user]) {
+                repair.rescanUser(user);
+            }
+        }
+        for (int board = 0; board < boards; board++) {
+            if (dirtyBoards[board]) {
+                repair.rescanBoard(board);
+            }
+        }
+        return repair.run();
+    }
+
+    private MatchingResult run() {
+        while (candidateCount > 0) {
+            double score = candidateScores[0];
+            int user = candidateUsers[0];
+            int board = candidateBoards[0];
+            int agent = candidateAgents[0];
+            popCandidate();
+            if (!isBlocking(user, board, score)) {
+                rescan(agent);
+                continue;
+            }
+            int droppedBoard = -1;
+            int droppedUser = -1;
+            if (matchCounts[user] == perUser) {
+                droppedBoard = matches[worstMatch(user)];
+                unlink(user, droppedBoard);
+            }
+            if (heapSizes[board] == capacity) {
+                droppedUser = heapUsers[board * capacity];
+                unlink(droppedUser, board);
+            }
+            link(user, board, score);
+            rescanUser(user);
+            rescanBoard(board);
+            if (droppedBoard >= 0) {
+                rescanBoard(droppedBoard);
+            }
+            if (droppedUser >= 0) {
+                rescanUser(droppedUser);
+            }
+        }
+        sortByPreference();
+        return new MatchingResult(users, perUser, matches, matchCounts);
+    }
+
+    //전체 순서에서 (score, user, board)가 (otherScore, otherUser, otherBoard)보다 앞서는지
+    static boolean before(double score, int user, int board, double otherScore, int otherUser, int otherBoard) {
+        int compared = Double.compare(score, otherScore);
+        if (compared != 0) {
+            return compared > 0;
+        }
+        return user != otherUser ? user < otherUser : board < otherBoard;
+    }
+
+    private boolean isBlocking(int user, int board, double score) {
+        if (score == StableMatcher.EXCLUDED) {
+            return false;
+        }
+        if (matchCounts[user] == perUser) {
+            int worst = worstMatch(user);
+            if (!before(score, user, board, matchScores[worst], user, matches[worst])) {
+                return false;
+            }
+        }
+        if (heapSizes[board] == capacity) {
+            int root = board * capacity;
+            if (capacity == 0 || !before(score, user, board, heapScores[root], heapUsers[root], board)) {
+                return false;
+            }
+        }
+        return !isMatched(user, board);
+    }
+
+    private void rescan(int agent) {
+        if (agent >= 0) {
+            rescanUser(agent);
+        } else {
+            rescanBoard(-agent - 1);
+        }
+    }
+
+    //user가 낄 수 있는 가장 앞선 쌍을 후보로 넣는다.
+    private void rescanUser(int user) {
+        if (perUser == 0) {
+            return;
+        }
+        int bestBoard = -1;
+        double bestScore = 0;
+        for (int board = 0; board < boards; board++) {
+            double score = scoreFunction.score(user, board);
+            if (bestBoard >= 0 && !before(score, user, board, bestScore, user, bestBoard)) {
+                continue;
+            }
+            if (isBlocking(user, board, score)) {
+                bestBoard = board;
+                bestScore = score;
+            }
+        }
+        if (bestBoard >= 0) {
+            pushCandidate(bestScore, user, bestBoard, user);
+        }
+    }
+
+    private void rescanBoard(int board) {
+        if (capacity == 0) {
+            return;
+        }
+        int bestUser = -1;
+        double bestScore = 0;
+        for (int user = 0; user < users; user++) {
+            double score = scoreFunction.score(user, board);
+            if (bestUser >= 0 && !before(score, user, board, bestScore, bestUser, board)) {
+                continue;
+            }
+            if (isBlocking(user, board, score)) {
+                bestUser = user;
+                bestScore = score;
+            }
+        }
+        if (bestUser >= 0) {
+            pushCandidate(bestScore, bestUser, board, -board - 1);
+        }
+    }
+
+    private boolean isMatched(int user, int board) {
+        int base = user * perUser;
+        for (int i = 0; i < matchCounts[user]; i++) {
+            if (matches[base + i] == board) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    //user의 매칭 중 전체 순서에서 가장 뒤인 칸의 위치
+    private int worstMatch(int user) {
+        int base = user * perUser;
+        int worst = base;
+        for (int i = base + 1; i < base + matchCounts[user]; i++) {
+            if (before(matchScores[worst], user, matches[worst], matchScores[i], user, matches[i])) {
+                worst = i;
+            }
+        }
+        return worst;
+    }
+
+    private void link(int user, int board, double score) {
+        int position = user * perUser + matchCounts[user]++;
+        matches[position] = board;
+        matchScores[position] = score;
+
+        int base = board * capacity;
+        int i = heapSizes[board]++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!before(heapScores[base + parent], heapUsers[base + parent], board, score, user, board)) {
+                break;
+            }
+            heapScores[base + i] = heapScores[base + parent];
+            heapUsers[base + i] = heapUsers[base + parent];
+            i = parent;
+        }
+        heapScores[base + i] = score;
+        heapUsers[base + i] = user;
+    }
+
+    private void unlink(int user, int board) {
+        int base = user * perUser;
+        int count = matchCounts[user];
+        for (int i = 0; i < count; i++) {
+            if (matches[base + i] == board) {
+                matches[base + i] = matches[base + count - 1];
+                matchScores[base + i] = matchScores[base + count - 1];
+                matchCounts[user] = count - 1;
+                break;
+            }
+        }
+
+        int heapBase = board * capacity;
+        int size = heapSizes[board];
+        for (int i = 0; i < size; i++) {
+            if (heapUsers[heapBase + i] == user) {
+                heapSizes[board] = --size;
+                if (i < size) {
+                    double lastScore = heapScores[heapBase + size];
+                    int lastUser = heapUsers[heapBase + size];
+                    siftDown(board, i, lastScore, lastUser);
+                    siftUp(board, indexOfUser(board, lastUser));
+                }
+                return;
+            }
+        }
+    }
+
+    private int indexOfUser(int board, int user) {
+        int base = board * capacity;
+        for (int i = 0; i < heapSizes[board]; i++) {
+            if (heapUsers[base + i] == user) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void siftDown(int board, int i, double score, int user) {
+        int base = board * capacity;
+        int size = heapSizes[board];
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && before(heapScores[base + child], heapUsers[base + child], board,
+                heapScores[base + child + 1], heapUsers[base + child + 1], board)) {
+                child++;
+            }
+            if (!before(score, user, board, heapScores[base + child], heapUsers[base + child], board)) {
+                break;
+            }
+            heapScores[base + i] = heapScores[base + child];
+            heapUsers[base + i] = heapUsers[base + child];
+            i = child;
+        }
+        heapScores[base + i] = score;
+        heapUsers[base + i] = user;
+    }
+
+    private void siftUp(int board, int i) {
+        int base = board * capacity;
+        double score = heapScores[base + i];
+        int user = heapUsers[base + i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!before(heapScores[base + parent], heapUsers[base + parent], board, score, user, board)) {
+                break;
+            }
+            heapScores[base + i] = heapScores[base + parent];
+            heapUsers[base + i] = heapUsers[base + parent];
+            i = parent;
+        }
+        heapScores[base + i] = score;
+        heapUsers[base + i] = user;
+    }
+
+    private void pushCandidate(double score, int user, int board, int agent) {
+        if (candidateCount == candidateScores.length) {
+            int grown = candidateCount * 2;
+            candidateScores = Arrays.copyOf(candidateScores, grown);
+            candidateUsers = Arrays.copyOf(candidateUsers, grown);
+            candidateBoards = Arrays.copyOf(candidateBoards, grown);
+            candidateAgents = Arrays.copyOf(candidateAgents, grown);
+        }
+        int i = candidateCount++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!before(score, user, board, candidateScores[parent], candidateUsers[parent], candidateBoards[parent])) {
+                break;
+            }
+            moveCandidate(parent, i);
+            i = parent;
+        }
+        candidateScores[i] = score;
+        candidateUsers[i] = user;
+        candidateBoards[i] = board;
+        candidateAgents[i] = agent;
+    }
+
+    private void popCandidate() {
+        int size = --candidateCount;
+        if (size == 0) {
+            return;
+        }
+        double score = candidateScores[size];
+        int user = candidateUsers[size];
+        int board = candidateBoards[size];
+        int agent = candidateAgents[size];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && before(candidateScores[child + 1], candidateUsers[child + 1], candidateBoards[child + 1],
+                candidateScores[child], candidateUsers[child], candidateBoards[child])) {
+                child++;
+            }
+            if (!before(candidateScores[child], candidateUsers[child], candidateBoards[child], score, user, board)) {
+                break;
+            }
+            moveCandidate(child, i);
+            i = child;
+        }
+        candidateScores[i] = score;
+        candidateUsers[i] = user;
+        candidateBoards[i] = board;
+        candidateAgents[i] = agent;
+    }
+
+    private void moveCandidate(int from, int to) {
+        candidateScores[to] = candidateScores[from];
+        candidateUsers[to] = candidateUsers[from];
+        candidateBoards[to] = candidateBoards[from];
+        candidateAgents[to] = candidateAgents[from];
+    }
+
+    //StableMatcher처럼 유저별 목록을 유저의 선호 순서(점수 내림차순, 같으면 게시물 인덱스 오름차순)로 둔다.
+    private void sortByPreference() {
+        for (int user = 0; user < users; user++) {
+            int base = user * perUser;
+            for (int i = base + 1; i < base + matchCounts[user]; i++) {
+                int board = matches[i];
+                double score = matchScores[i];
+                int j = i;
+                while (j > base && StableMatcher.prefers(score, board, matchScores[j - 1], matches[j - 1])) {
+                    matches[j] = matches[j - 1];
+                    matchScores[j] = matchScores[j - 1];
+                    j--;
+                }
+                matches[j] = board;
+                matchScores[j] = score;
+            }
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.tripminglematching.utils;
+
+// 크기가 고정된 primitive 최소 힙. 루트에는 현재 K개 중 가장 덜 유사한 항목이 있다.
+// 유사도가 같으면 id가 작은 쪽을 더 앞 순위로 본다.
+public final class TopKHeap {
+
+    private final int capacity;
+    private final double[] similarities;
+    private final int[] slots;
+    private final long[] ids;
+    private int size;
+    private boolean sorted;
+
+    public TopKHeap(int capacity) {
+        this.capacity = capacity;
+        this.similarities = new double[capacity];
+        this.slots = new int[capacity];
+        this.ids = new long[capacity];
+    }
+
+    public boolean offer(double similarity, int slot, long id) {
+        if (sorted) {
+            throw new IllegalStateException("heap is already sorted");
+        }
+        if (size < capacity) {
+            similarities[size] = similarity;
+            slots[size] = slot;
+            ids[size] = id;
+            siftUp(size++);
+            return true;
+        }
+        if (capacity == 0 || !ranksBefore(similarity, id, similarities[0], ids[0])) {
+            return false;
+        }
+        similarities[0] = similarity;
+        slots[0] = slot;
+        ids[0] = id;
+        siftDown(0, size);
+        return true;
+    }
+
+    public boolean isFull() {
+        return size == capacity;
+    }
+
+    //가득 찼을 때 새 항목이 들어오려면 넘어야 하는 유사도
+    public double threshold() {
+        return isFull() && capacity > 0 ? similarities[0] : Double.NEGATIVE_INFINITY;
+    }
+
+    //힙 정렬로 0번이 가장 유사한 순서가 되도록 제자리 정렬한다. 이후에는 offer 할 수 없다.
+    public TopKHeap sortDescending() {
+        if (!sorted) {
+            for (int end = size - 1; end > 0; end--) {
+                swap(0, end);
+                siftDown(0, end);
+            }
+            sorted = true;
+        }
+        return this;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public double similarityAt(int index) {
+        return similarities[index];
+    }
+
+    public int slotAt(int index) {
+        return slots[index];
+    }
+
+    public long idAt(int index) {
+        return ids[index];
+    }
+
+    public static boolean ranksBefore(double similarityA, long idA, double similarityB, long idB) {
+        int compare = Double.compare(similarityA, similarityB);
+        return compare != 0 ? compare > 0 : idA < idB;
+    }
+
+    private void siftUp(int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (!ranksBefore(similarities[parent], ids[parent], similarities[index], ids[index])) {
+                break;
+            }
+            swap(parent, index);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int index, int limit) {
+        while (true) {
+            int worst = index;
+            int left = 2 * index + 1;
+            int right = left + 1;
+            if (left < limit && ranksBefore(similarities[worst], ids[worst], similarities[left], ids[left])) {
+                worst = left;
+            }
+            if (right < limit && ranksBefore(similarities[worst], ids[worst], similarities[right], ids[right])) {
+                worst = right;
+            }
+            if (worst == index) {
+                return;
+            }
+            swap(index, worst);
+            index = worst;
+        }
+    }
+
+    private void swap(int a, int b) {
+        double similarity = similarities[a];
+        similarities[a] = similarities[b];
+        similarities[b] = similarity;
+        int slot = slots[a];
+        slots[a] = slots[b];
+        slots[b] = slot;
+        long id = ids[a];
+        ids[a] = ids[b];
+        ids[b] = id;
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.tripminglematching.listener;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+import com.example.tripminglematching.listener.MatchingCommand.Delete;
+import com.example.tripminglematching.listener.MatchingCommand.Match;
+import com.example.tripminglematching.listener.MatchingCommand.Recalculate;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+class CommandDecoderTest {
+
+    private final CommandDecoder decoder = new CommandDecoder();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void decodesDoubleEncodedEnvelope() throws Exception {
+        String json = "{\"messageId\":\"a\\\"b-1\",\"userId\":7,\"countryName\":\"대한민국\","
+            + "\"startDate\":[2024,5,1],\"endDate\":[2024,5,10,0],\"extra\":{\"x\":[1,2]},\"fastPath\":true}";
+        //게시 측처럼 JSON 문자열로 한 번 더 감싼다.
+        byte[] body = objectMapper.writeValueAsBytes(json);
+
+        Match match = (Match) decoder.decode(bytes(RedisMessageSubscriber.MATCHING_USER), body);
+
+        assertEquals(7L, match.userId().longValue());
+        //예전처럼 JsonNode.toString() 형태(따옴표 포함)
+        assertEquals(objectMapper.readTree(json).get("messageId").toString(), match.messageId());
+        assertEquals("대한민국", match.countryName());
+        assertEquals(LocalDate.of(2024, 5, 1), match.startDate());
+        assertEquals(LocalDate.of(2024, 5, 10), match.endDate());
+        assertTrue(match.fastPath());
+    }
+
+    @Test
+    void decodesPlainObjectAndNumericMessageId() throws Exception {
+        MatchingCommand command = decoder.decode(RedisMessageSubscriber.RE_CALCULATE_USER_PUBLISH,
+            "{\"userPersonalityId\":\"42\",\"messageId\":1001}");
+        assertEquals(new Recalculate(42L, "1001"), command);
+
+        Delete delete = (Delete) decoder.decode(bytes(RedisMessageSubscriber.DELETE_USER_PUBLISH),
+            objectMapper.writeValueAsBytes("{\"messageId\":\"m\",\"userPersonalityId\":3}"));
+        assertEquals(new Delete(3L, "\"m\""), delete);
+    }
+
+    @Test
+    void rejectsMissingFieldsAndIgnoresUnknownChannels() throws Exception {
+        assertNull(decoder.decode(bytes("pubsub:other"), bytes("{}")));
+        assertThrows(IOException.class,
+            () -> decoder.decode(bytes(RedisMessageSubscriber.ADD_USER_PUBLISH), bytes("{\"messageId\":\"m\"}")));
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
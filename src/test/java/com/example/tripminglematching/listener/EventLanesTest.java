@@ -0,0 +1,71 @@
+package com.example.tripminglematching.listener;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+class EventLanesTest {
+
+    @Test
+    void keepsOrderPerKey() throws InterruptedException {
+        EventLanes lanes = new EventLanes(4, 8);
+        int keys = 32;
+        List<List<Integer>> seen = new ArrayList<>();
+        for (int key = 0; key < keys; key++) {
+            seen.add(new ArrayList<>());
+        }
+        Random random = new Random(3);
+        int[] next = new int[keys];
+        for (int i = 0; i < 2_000; i++) {
+            int key = random.nextInt(keys);
+            int sequence = next[key]++;
+            lanes.submit(key, () -> seen.get(key).add(sequence));
+        }
+        lanes.shutdown();
+
+        for (int key = 0; key < keys; key++) {
+            List<Integer> sequences = seen.get(key);
+            assertEquals(next[key], sequences.size());
+            for (int i = 0; i < sequences.size(); i++) {
+                assertEquals(i, sequences.get(i).intValue());
+            }
+        }
+        LaneReport report = lanes.report();
+        assertEquals(2_000, report.submitted());
+        assertEquals(2_000, report.completed());
+        assertEquals(0, report.queued());
+    }
+
+    //서로 다른 레인의 두 작업이 동시에 돌지 않으면 barrier에서 시간이 다 된다.
+    @Test
+    void runsDifferentKeysConcurrently() throws InterruptedException {
+        EventLanes lanes = new EventLanes(4, 8);
+        long first = 1L;
+        long second = 2L;
+        while (lanes.laneOf(second) == lanes.laneOf(first)) {
+            second++;
+        }
+        CyclicBarrier barrier = new CyclicBarrier(2);
+        AtomicInteger met = new AtomicInteger();
+        for (long key : new long[] {first, second}) {
+            lanes.submit(key, () -> {
+                try {
+                    barrier.await(5, TimeUnit.SECONDS);
+                    met.incrementAndGet();
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+        }
+        lanes.shutdown();
+
+        assertEquals(2, met.get());
+    }
+}
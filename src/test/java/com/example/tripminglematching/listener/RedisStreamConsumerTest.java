@@ -0,0 +1,185 @@
+package com.example.tripminglematching.listener;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import com.example.tripminglematching.service.ShardAssignment;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.core.StreamOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+@Testcontainers(disabledWithoutDocker = true)
+class RedisStreamConsumerTest {
+
+    private static final String GROUP = "test-group";
+    private static final String STREAM = RedisStreamConsumer.MATCHING_STREAM;
+    private static final long MIN_IDLE_MILLIS = 200;
+
+    @Container
+    private static final GenericContainer<?> REDIS = new GenericContainer<>(DockerImageName.parse("redis:7-alpine"))
+        .withExposedPorts(6379);
+
+    private LettuceConnectionFactory connectionFactory;
+    private StringRedisTemplate redisTemplate;
+    private StreamOperations<String, Object, Object> streams;
+    private RedisStreamConsumer consumer;
+    private RedisStreamConsumer other;
+
+    @BeforeEach
+    void connect() {
+        connectionFactory = new LettuceConnectionFactory(new RedisStandaloneConfiguration(REDIS.getHost(), REDIS.getMappedPort(6379)));
+        connectionFactory.afterPropertiesSet();
+        redisTemplate = new StringRedisTemplate(connectionFactory);
+        streams = redisTemplate.opsForStream();
+        try (RedisConnection connection = connectionFactory.getConnection()) {
+            connection.serverCommands().flushAll();
+        }
+    }
+
+    @AfterEach
+    void close() throws InterruptedException {
+        if (consumer != null) {
+            consumer.stop();
+        }
+        if (other != null) {
+            other.stop();
+        }
+        connectionFactory.destroy();
+    }
+
+    @Test
+    void acknowledgesAfterProcessing() throws InterruptedException {
+        streams.add(STREAM, Map.of(RedisStreamConsumer.MESSAGE_FIELD, "match-1"));
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        consumer = start(subscriber, "live", 10);
+
+        awaitSize(subscriber.bodies, 1);
+        assertEquals(RedisMessageSubscriber.MATCHING_USER, subscriber.channels.get(0));
+        assertEquals("match-1", subscriber.bodies.get(0));
+        //처리가 끝나기 전에는 pending에 남아 있다.
+        assertEquals(1L, pendingCount());
+
+        subscriber.acknowledgements.get(0).run();
+        assertEquals(0L, pendingCount());
+    }
+
+    //죽은 인스턴스가 가져간 항목이 한 번에 읽는 count보다 많아도 모두 다시 가져온다.
+    @Test
+    void claimsIdleEntriesPageByPage() throws InterruptedException {
+        for (int i = 0; i < 5; i++) {
+            streams.add(STREAM, Map.of(RedisStreamConsumer.MESSAGE_FIELD, "match-" + i));
+        }
+        streams.createGroup(STREAM, ReadOffset.from("0"), GROUP);
+        streams.read(Consumer.from(GROUP, "crashed"), StreamReadOptions.empty().count(10),
+            StreamOffset.create(STREAM, ReadOffset.lastConsumed()));
+        assertEquals(5L, pendingCount());
+
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        consumer = start(subscriber, "live", 2);
+
+        awaitSize(subscriber.bodies, 5);
+        assertEquals(5, new HashSet<>(subscriber.bodies).size());
+        subscriber.acknowledgements.forEach(Runnable::run);
+        assertEquals(0L, pendingCount());
+    }
+
+    //처리 중인 항목은 min-idle-ms가 지나도 스스로 다시 가져와 두 번 처리하지 않는다.
+    @Test
+    void doesNotReclaimEntriesInFlight() throws InterruptedException {
+        streams.add(STREAM, Map.of(RedisStreamConsumer.MESSAGE_FIELD, "match-1"));
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        consumer = start(subscriber, "live", 10);
+
+        awaitSize(subscriber.bodies, 1);
+        Thread.sleep(MIN_IDLE_MILLIS * 5);
+        assertEquals(1, subscriber.bodies.size());
+
+        subscriber.acknowledgements.get(0).run();
+        assertEquals(0L, pendingCount());
+    }
+
+    //유저 이벤트는 인스턴스마다 메모리 상태를 고쳐야 하므로 모든 인스턴스가 받고, 매칭 요청은 한 인스턴스만 받는다.
+    @Test
+    void userEventsReachEveryInstance() throws InterruptedException {
+        RecordingSubscriber first = new RecordingSubscriber();
+        RecordingSubscriber second = new RecordingSubscriber();
+        consumer = start(first, "first", 10);
+        other = start(second, "second", 10);
+        streams.add(RedisStreamConsumer.ADD_USER_STREAM, Map.of(RedisStreamConsumer.MESSAGE_FIELD, "add-1"));
+        streams.add(RedisStreamConsumer.DELETE_USER_STREAM, Map.of(RedisStreamConsumer.MESSAGE_FIELD, "delete-1"));
+        streams.add(STREAM, Map.of(RedisStreamConsumer.MESSAGE_FIELD, "match-1"));
+
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (first.bodies.size() + second.bodies.size() < 5 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        Thread.sleep(MIN_IDLE_MILLIS);
+        for (RecordingSubscriber subscriber : List.of(first, second)) {
+            assertTrue(subscriber.bodies.containsAll(List.of("add-1", "delete-1")));
+        }
+        assertEquals(1, first.bodies.stream().filter("match-1"::equals).count()
+            + second.bodies.stream().filter("match-1"::equals).count());
+
+        first.acknowledgements.forEach(Runnable::run);
+        second.acknowledgements.forEach(Runnable::run);
+        for (StreamReport report : consumer.report()) {
+            assertEquals(0L, report.pending());
+            assertEquals(0L, report.lag());
+        }
+    }
+
+    private RedisStreamConsumer start(RecordingSubscriber subscriber, String name, int count) {
+        RedisStreamConsumer started = new RedisStreamConsumer(subscriber, redisTemplate, new ShardAssignment(1, 0, "hash", ""), GROUP, name, count, 100,
+            MIN_IDLE_MILLIS, 50);
+        started.start();
+        return started;
+    }
+
+    private long pendingCount() {
+        return streams.pending(STREAM, GROUP).getTotalPendingMessages();
+    }
+
+    private void awaitSize(List<String> values, int size) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (values.size() < size && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(size, values.size());
+    }
+
+    //처리를 기록만 하고 acknowledge는 테스트가 부른다.
+    private static class RecordingSubscriber extends RedisMessageSubscriber {
+
+        private final List<String> channels = new CopyOnWriteArrayList<>();
+        private final List<String> bodies = new CopyOnWriteArrayList<>();
+        private final List<Runnable> acknowledgements = new CopyOnWriteArrayList<>();
+
+        RecordingSubscriber() {
+            super(null, null, null, null, null);
+        }
+
+        @Override
+        public void dispatch(String channel, String messageBody, Runnable acknowledge) {
+            channels.add(channel);
+            bodies.add(messageBody);
+            acknowledgements.add(acknowledge);
+        }
+    }
+}
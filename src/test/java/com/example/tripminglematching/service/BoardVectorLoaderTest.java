@@ -0,0 +1,110 @@
+package com.example.tripminglematching.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.reflect.Proxy;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+import com.example.tripminglematching.repository.BoardRepository;
+import com.example.tripminglematching.repository.BoardVectorView;
+import com.example.tripminglematching.service.BoardIndex.IndexedBoard;
+import org.junit.jupiter.api.Test;
+
+class BoardVectorLoaderTest {
+
+    private static final LocalDate START = LocalDate.of(2024, 7, 1);
+    private static final LocalDate END = LocalDate.of(2024, 7, 10);
+    private static final LocalDateTime UPDATED_AT = LocalDateTime.of(2024, 6, 1, 0, 0);
+
+    //2번은 색인된 뒤 소프트 삭제되어 벡터 조회(@Where is_deleted = false)에 행이 없다.
+    @Test
+    void dropsBoardsWithoutVectorRow() {
+        Set<Long> withRows = Set.of(1L, 3L);
+        BoardRepository repository = repository(List.of(1L, 2L, 3L), withRows);
+        BoardVectorCache cache = new BoardVectorCache(100);
+        BoardIndex boardIndex = new BoardIndex(repository, cache);
+        boardIndex.load();
+        BoardVectorLoader loader = new BoardVectorLoader(repository, cache, boardIndex, false);
+
+        List<IndexedBoard> candidates = boardIndex.find("Japan", START, END);
+        assertEquals(3, candidates.size());
+        BoardVectors boards = loader.load(candidates);
+
+        assertEquals(2, boards.size());
+        assertArrayEquals(new long[] {1L, 3L}, boards.boardIds());
+        assertArrayEquals(new long[] {101L, 103L}, boards.authorIds());
+        assertEquals(List.of(1L, 3L), boards.candidates().stream().map(IndexedBoard::boardId).toList());
+        for (int board = 0; board < boards.size(); board++) {
+            assertEquals(1.0, norm(boards, board), 1e-12);
+        }
+        //다음 요청부터는 색인에서도 빠진다.
+        assertEquals(2, boardIndex.size());
+        assertEquals(List.of(1L, 3L), boardIndex.find("Japan", START, END).stream().map(IndexedBoard::boardId).toList());
+        assertEquals(2, cache.size());
+        assertEquals(new CacheReport(2, 100, 0, 3, 0, 0.0), cache.report());
+
+        //두 번째 조회는 캐시에서 읽는다.
+        loader.load(boardIndex.find("Japan", START, END));
+        assertEquals(2, cache.report().hits());
+
+        //색인에서 빠진 게시물은 캐시에서도 빠진다.
+        boardIndex.evict(1L);
+        assertEquals(1, cache.size());
+    }
+
+    private double norm(BoardVectors boards, int board) {
+        double sum = 0.0;
+        for (int d = 0; d < 16; d++) {
+            double value = boards.vectors()[BoardVectors.offset(board) + d];
+            sum += value * value;
+        }
+        return Math.sqrt(sum);
+    }
+
+    private BoardRepository repository(List<Long> indexed, Set<Long> withRows) {
+        return (BoardRepository) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {BoardRepository.class},
+            (proxy, method, args) -> switch (method.getName()) {
+                case "findBoardIndexRows" -> indexRows(indexed);
+                case "findBoardIndexRowsUpdatedSince" -> List.of();
+                case "findBoardVectorsByIdIn" -> vectorRows((Collection<?>) args[0], withRows);
+                default -> throw new UnsupportedOperationException(method.getName());
+            });
+    }
+
+    private List<Object[]> indexRows(List<Long> boardIds) {
+        List<Object[]> rows = new ArrayList<>();
+        for (long boardId : boardIds) {
+            rows.add(new Object[] {boardId, 100L + boardId, "Japan", START, END, UPDATED_AT, false, 3, 3, 3, 3, 3});
+        }
+        return rows;
+    }
+
+    private List<BoardVectorView> vectorRows(Collection<?> boardIds, Set<Long> withRows) {
+        List<BoardVectorView> rows = new ArrayList<>();
+        for (Object id : boardIds) {
+            long boardId = (Long) id;
+            if (withRows.contains(boardId)) {
+                rows.add(view(boardId));
+            }
+        }
+        return rows;
+    }
+
+    //작성자 성향은 게시물마다 다르게, 선호 조건은 모두 보통(3)으로 둔다.
+    private BoardVectorView view(long boardId) {
+        return (BoardVectorView) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {BoardVectorView.class},
+            (proxy, method, args) -> switch (method.getName()) {
+                case "getBoardId" -> boardId;
+                case "getAuthorId" -> 100L + boardId;
+                case "getAuthorPersonalityId" -> 200L + boardId;
+                case "getPreferGender", "getPreferSmoking", "getPreferBudget", "getPreferPhoto", "getPreferDrink" -> 3.0;
+                case "getGender" -> (double) (1 + boardId % 5);
+                default -> method.getReturnType() == double.class || method.getReturnType() == Double.class ? 4.0 : null;
+            });
+    }
+}
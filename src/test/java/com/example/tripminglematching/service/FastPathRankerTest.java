@@ -0,0 +1,31 @@
+package com.example.tripminglematching.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class FastPathRankerTest {
+
+    @Test
+    void skipsFullBoardsTheUserCannotBeat() {
+        double[] scores = {0.9, 0.8, 0.8, 0.5, 0.1};
+        //0번은 꽉 찼고 cutoff가 더 높다. 1번은 cutoff와 같아서 밀린다. 나머지는 자리가 남았거나 이전 결과에 없다.
+        double[] cutoffs = {0.95, 0.8, Double.NEGATIVE_INFINITY, 0.4, Double.NaN};
+        long[] boardIds = {10L, 20L, 30L, 40L, 50L};
+
+        assertEquals(List.of(30L, 40L, 50L), FastPathRanker.rank(scores, cutoffs, boardIds, 10));
+        assertEquals(List.of(30L, 40L), FastPathRanker.rank(scores, cutoffs, boardIds, 2));
+    }
+
+    @Test
+    void breaksTiesByBoardIndex() {
+        double[] scores = {0.3, 0.7, 0.7, 0.7};
+        double[] cutoffs = {Double.NaN, Double.NaN, Double.NaN, Double.NaN};
+        long[] boardIds = {1L, 2L, 3L, 4L};
+
+        assertEquals(List.of(2L, 3L), FastPathRanker.rank(scores, cutoffs, boardIds, 2));
+        assertEquals(List.of(), FastPathRanker.rank(scores, cutoffs, boardIds, 0));
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.tripminglematching.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.example.tripminglematching.service.BoardIndex.IndexedBoard;
+import org.junit.jupiter.api.Test;
+
+class MatchingResultCacheTest {
+
+    private static final LocalDateTime UPDATED_AT = LocalDateTime.of(2024, 6, 1, 0, 0);
+
+    //게시물 id와 updatedAt 목록이 모두 같을 때만 계산한 결과를 같이 쓴다.
+    @Test
+    void reusesOnlyIdenticalCandidateSets() {
+        MatchingResultCache cache = new MatchingResultCache(8);
+        AtomicInteger computed = new AtomicInteger();
+
+        CachedMatching first = cache.get("Japan", boards(UPDATED_AT, 1L, 2L), 7L, previous -> matching(computed));
+        assertSame(first, cache.get("Japan", boards(UPDATED_AT, 1L, 2L), 7L, previous -> matching(computed)));
+        assertSame(first, cache.peek("Japan", boards(UPDATED_AT, 1L, 2L), 7L));
+
+        assertNotSame(first, cache.get("Japan", boards(UPDATED_AT, 1L, 3L), 7L, previous -> matching(computed)));
+        assertNotSame(first, cache.get("Japan", boards(UPDATED_AT.plusNanos(1), 1L, 2L), 7L, previous -> matching(computed)));
+        assertNotSame(first, cache.get("Japan", boards(UPDATED_AT, 1L, 2L), 8L, previous -> matching(computed)));
+        assertNull(cache.peek("Korea", boards(UPDATED_AT, 1L, 2L), 7L));
+
+        assertEquals(4, computed.get());
+        assertEquals(new CacheReport(4, 8, 1, 4, 0, 0.2), cache.report());
+    }
+
+    private List<IndexedBoard> boards(LocalDateTime updatedAt, long... boardIds) {
+        return Arrays.stream(boardIds)
+            .mapToObj(boardId -> new IndexedBoard(boardId, 100L + boardId, "Japan", 0, 10, updatedAt, new double[0]))
+            .toList();
+    }
+
+    private CachedMatching matching(AtomicInteger computed) {
+        computed.incrementAndGet();
+        return new CachedMatching(new long[0], new long[0], new double[0], new int[0], new int[0], new long[0], new int[0],
+            0, 0, null, new double[0]);
+    }
+}
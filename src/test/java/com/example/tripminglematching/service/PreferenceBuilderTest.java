@@ -0,0 +1,112 @@
+package com.example.tripminglematching.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import com.example.tripminglematching.utils.FeatureVector;
+import com.example.tripminglematching.utils.PackedVectors;
+import com.example.tripminglematching.utils.SimilarityUtils;
+import com.example.tripminglematching.utils.TopKHeap;
+import org.junit.jupiter.api.Test;
+
+class PreferenceBuilderTest {
+
+    private static final int K = 50;
+
+    @Test
+    void parallelTopKMatchesFullSort() {
+        PackedVectors users = randomUsers(new Random(11), 700);
+        ForkJoinPool pool = new ForkJoinPool(4);
+
+        TopKHeap[] rows = PreferenceBuilder.topK(users, users, K, pool);
+
+        for (int row = 0; row < users.size(); row++) {
+            List<long[]> expected = fullSort(users, row);
+            TopKHeap actual = rows[row].sortDescending();
+            assertEquals(Math.min(K, users.size() - 1), actual.size());
+            for (int i = 0; i < actual.size(); i++) {
+                assertEquals(expected.get(i)[0], actual.idAt(i));
+            }
+        }
+        pool.shutdown();
+    }
+
+    @Test
+    void internedTopKMatchesPlainTopK() {
+        //응답 범위를 좁혀서 같은 벡터가 많이 생기게 한다.
+        Random random = new Random(13);
+        int n = 900;
+        double[] vectors = new double[n * FeatureVector.DIMENSION];
+        int[] slots = new int[n];
+        long[] ids = new long[n];
+        for (int i = 0; i < n; i++) {
+            double[] raw = new double[FeatureVector.DIMENSION];
+            for (int d = 0; d < 4; d++) {
+                raw[d] = (random.nextInt(3) - 1) * 12.0;
+            }
+            raw[4] = 8.0;
+            System.arraycopy(FeatureVector.of(raw).values(), 0, vectors, PackedVectors.offset(i), raw.length);
+            slots[i] = i;
+            ids[i] = (i * 7919L) % n;
+        }
+        ForkJoinPool pool = new ForkJoinPool(4);
+
+        int[] squaredNorms = new int[n];
+        Arrays.fill(squaredNorms, -1);
+        ProfileClasses classes = ProfileInterner.intern(slots, ids, squaredNorms, vectors);
+        TopKHeap[] interned = PreferenceBuilder.topK(classes,
+            (a, b) -> SimilarityUtils.dot(vectors, PackedVectors.offset(a), vectors, PackedVectors.offset(b)), K, pool);
+        PackedVectors users = new PackedVectors(vectors, slots, ids);
+        TopKHeap[] plain = PreferenceBuilder.topK(users, users, K, pool);
+
+        assertTrue(classes.profiles() <= 81);
+        for (int row = 0; row < n; row++) {
+            TopKHeap expected = plain[row].sortDescending();
+            TopKHeap actual = interned[row].sortDescending();
+            assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < actual.size(); i++) {
+                assertEquals(expected.idAt(i), actual.idAt(i));
+                assertEquals(expected.slotAt(i), actual.slotAt(i));
+            }
+        }
+        pool.shutdown();
+    }
+
+    private List<long[]> fullSort(PackedVectors users, int row) {
+        List<long[]> candidates = new ArrayList<>();
+        List<Double> similarities = new ArrayList<>();
+        for (int column = 0; column < users.size(); column++) {
+            if (column == row) {
+                continue;
+            }
+            double similarity = SimilarityUtils.dot(users.vectors(), PackedVectors.offset(row), users.vectors(), PackedVectors.offset(column));
+            candidates.add(new long[] {users.ids()[column], similarities.size()});
+            similarities.add(similarity);
+        }
+        candidates.sort(Comparator.<long[]>comparingDouble(c -> -similarities.get((int) c[1])).thenComparingLong(c -> c[0]));
+        return candidates;
+    }
+
+    private PackedVectors randomUsers(Random random, int n) {
+        double[] vectors = new double[n * FeatureVector.DIMENSION];
+        int[] slots = new int[n];
+        long[] ids = new long[n];
+        for (int i = 0; i < n; i++) {
+            double[] raw = new double[FeatureVector.DIMENSION];
+            for (int d = 0; d < raw.length; d++) {
+                raw[d] = (random.nextInt(5) - 2) * 9.0;
+            }
+            raw[0] = 12.0;
+            System.arraycopy(FeatureVector.of(raw).values(), 0, vectors, PackedVectors.offset(i), raw.length);
+            slots[i] = i;
+            ids[i] = 1000 - i;
+        }
+        return new PackedVectors(vectors, slots, ids);
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.tripminglematching.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Random;
+
+import com.example.tripminglematching.utils.TopKHeap;
+import org.junit.jupiter.api.Test;
+
+class PreferenceIndexTest {
+
+    private static final int N = 300;
+
+    private final double[][] similarity = new double[N][N];
+    private final boolean[] live = new boolean[N];
+
+    @Test
+    void insertAndDeleteRepairKeepExactTopK() {
+        Random random = new Random(3);
+        for (int i = 0; i < N; i++) {
+            for (int j = 0; j < i; j++) {
+                similarity[i][j] = similarity[j][i] = random.nextDouble();
+            }
+        }
+        replay(random);
+    }
+
+    //유사도가 같은 항목이 많아도 id 오름차순으로 전체 계산과 같은 순서를 지킨다.
+    @Test
+    void tiesFollowIdOrderLikeFullRebuild() {
+        Random random = new Random(4);
+        for (int i = 0; i < N; i++) {
+            for (int j = 0; j < i; j++) {
+                similarity[i][j] = similarity[j][i] = random.nextInt(4) / 4.0;
+            }
+        }
+        replay(random);
+    }
+
+    private void replay(Random random) {
+        PreferenceIndex index = new PreferenceIndex();
+        for (int i = 0; i < 200; i++) {
+            live[i] = true;
+        }
+        for (int i = 0; i < 200; i++) {
+            index.setRow(i, exact(i, index.width()));
+        }
+
+        for (int step = 0; step < 600; step++) {
+            int x = random.nextInt(N);
+            if (!live[x]) {
+                live[x] = true;
+                for (int t = 0; t < N; t++) {
+                    if (t != x && live[t]) {
+                        index.insert(t, x, x, similarity[t][x]);
+                    }
+                }
+                index.setRow(x, exact(x, index.width()));
+            } else {
+                live[x] = false;
+                index.clearRow(x);
+                for (int t : index.referrersOf(x)) {
+                    index.remove(t, x);
+                    if (index.needsRebuild(t)) {
+                        index.setRow(t, exact(t, index.width()));
+                    }
+                }
+            }
+            assertVisibleRowsExact(index);
+        }
+    }
+
+    private void assertVisibleRowsExact(PreferenceIndex index) {
+        for (int slot = 0; slot < N; slot++) {
+            if (!live[slot]) {
+                continue;
+            }
+            TopKHeap expected = exact(slot, MatchingService.MAX_SIZE);
+            assertEquals(expected.size(), index.visibleSize(slot));
+            for (int rank = 0; rank < expected.size(); rank++) {
+                assertEquals(expected.similarityAt(rank), index.similarityAt(slot, rank));
+                assertEquals(expected.slotAt(rank), index.neighborAt(slot, rank));
+            }
+        }
+    }
+
+    private TopKHeap exact(int slot, int k) {
+        TopKHeap heap = new TopKHeap(k);
+        for (int t = 0; t < N; t++) {
+            if (t != slot && live[t]) {
+                heap.offer(similarity[slot][t], t, t);
+            }
+        }
+        return heap.sortDescending();
+    }
+}
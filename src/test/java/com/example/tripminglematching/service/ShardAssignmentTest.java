@@ -0,0 +1,64 @@
+package com.example.tripminglematching.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class ShardAssignmentTest {
+
+    @Test
+    void everyIdHasExactlyOneOwner() {
+        int count = 4;
+        long[] ids = new long[10_000];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = 1 + i * 3L;
+        }
+        for (String strategy : new String[] {"hash", "range"}) {
+            ShardAssignment[] shards = new ShardAssignment[count];
+            for (int index = 0; index < count; index++) {
+                shards[index] = new ShardAssignment(count, index, strategy, "7500, 15000,22500");
+            }
+            //나중에 추가된 더 큰 id도 한 샤드만 맡는다.
+            for (long id = 0; id < ids[ids.length - 1] + 1_000; id++) {
+                int owners = 0;
+                for (int index = 0; index < count; index++) {
+                    if (shards[index].owns(id)) {
+                        owners++;
+                    }
+                }
+                assertEquals(1, owners, strategy + " id " + id);
+            }
+            int[] idSizes = new int[count];
+            for (long id : ids) {
+                idSizes[shards[0].shardOf(id)]++;
+            }
+            for (int size : idSizes) {
+                assertTrue(Math.abs(size - ids.length / count) < ids.length / count / 10, strategy + " " + size);
+            }
+        }
+    }
+
+    //경계는 설정 값이므로 어느 인스턴스에서 만들어도 같은 id는 같은 샤드다.
+    @Test
+    void rangeBoundsComeFromConfiguration() {
+        ShardAssignment first = new ShardAssignment(3, 0, "range", "100,200");
+        ShardAssignment last = new ShardAssignment(3, 2, "range", "100,200");
+
+        assertEquals(0, first.shardOf(100));
+        assertEquals(1, first.shardOf(101));
+        assertEquals(1, last.shardOf(200));
+        assertEquals(2, last.shardOf(201));
+        assertTrue(first.owns(-5));
+        assertTrue(last.owns(Long.MAX_VALUE));
+        assertThrows(IllegalArgumentException.class, () -> new ShardAssignment(3, 0, "range", "100"));
+        assertThrows(IllegalArgumentException.class, () -> new ShardAssignment(3, 0, "range", "200,100"));
+    }
+
+    @Test
+    void singleShardOwnsEverything() {
+        ShardAssignment assignment = new ShardAssignment(1, 0, "range", "");
+        assertFalse(assignment.isSharded());
+        assertTrue(assignment.owns(Long.MAX_VALUE));
+        assertTrue(assignment.owns(-7));
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.tripminglematching.utils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class HnswIndexTest {
+
+    private static final int SIZE = 2000;
+    private static final int K = 10;
+    private static final int EF = 64;
+
+    @Test
+    void recallAgainstExactTopK() {
+        double[] vectors = randomVectors(new Random(3), SIZE);
+        HnswIndex index = build(vectors);
+
+        assertEquals(SIZE, index.size());
+        assertTrue(recall(index, vectors, new boolean[SIZE]) >= 0.95);
+    }
+
+    @Test
+    void removedSlotsAreNotReturned() {
+        double[] vectors = randomVectors(new Random(5), SIZE);
+        HnswIndex index = build(vectors);
+        boolean[] removed = new boolean[SIZE];
+        Random random = new Random(9);
+        for (int n = 0; n < SIZE / 10; n++) {
+            int slot = random.nextInt(SIZE);
+            index.remove(slot);
+            removed[slot] = true;
+        }
+        int live = 0;
+        for (boolean r : removed) {
+            live += r ? 0 : 1;
+        }
+
+        assertEquals(live, index.size());
+        for (int query = 0; query < SIZE; query += 7) {
+            TopKHeap result = index.search(vectors, query * FeatureVector.DIMENSION, K, EF, query);
+            assertEquals(K, result.size());
+            for (int i = 0; i < result.size(); i++) {
+                assertFalse(removed[result.slotAt(i)]);
+            }
+        }
+        assertTrue(recall(index, vectors, removed) >= 0.95);
+    }
+
+    @Test
+    void upsertReplacesExistingSlot() {
+        double[] vectors = randomVectors(new Random(8), SIZE);
+        HnswIndex index = build(vectors);
+        //5번 슬롯을 다른 id, 100번 벡터로 다시 넣는다.
+        double[] moved = new double[FeatureVector.DIMENSION];
+        System.arraycopy(vectors, 100 * FeatureVector.DIMENSION, moved, 0, FeatureVector.DIMENSION);
+        index.insert(5, 10_005L, moved);
+
+        assertEquals(SIZE, index.size());
+        TopKHeap result = index.search(moved, 0, K, EF, 100).sortDescending();
+        assertEquals(5, result.slotAt(0));
+        assertEquals(10_005L, result.idAt(0));
+        assertEquals(1.0, result.similarityAt(0), 1e-12);
+
+        //예전 5번 벡터로 찾으면 5번은 새 벡터의 유사도로만 나온다.
+        TopKHeap old = index.search(vectors, 5 * FeatureVector.DIMENSION, K, EF, -1);
+        for (int i = 0; i < old.size(); i++) {
+            if (old.slotAt(i) == 5) {
+                assertEquals(SimilarityUtils.dot(vectors, 5 * FeatureVector.DIMENSION, moved, 0), old.similarityAt(i), 1e-12);
+            }
+        }
+    }
+
+    private HnswIndex build(double[] vectors) {
+        HnswIndex index = new HnswIndex(16, 100);
+        double[] vector = new double[FeatureVector.DIMENSION];
+        for (int slot = 0; slot < SIZE; slot++) {
+            System.arraycopy(vectors, slot * FeatureVector.DIMENSION, vector, 0, FeatureVector.DIMENSION);
+            index.insert(slot, slot, vector);
+        }
+        return index;
+    }
+
+    //NeighborSearch.recallReport와 같이 전수 비교 K번째 유사도 이상이면 맞춘 것으로 본다.
+    private double recall(HnswIndex index, double[] vectors, boolean[] removed) {
+        long hits = 0;
+        long total = 0;
+        for (int query = 0; query < SIZE; query += 7) {
+            if (removed[query]) {
+                continue;
+            }
+            int offset = query * FeatureVector.DIMENSION;
+            TopKHeap exact = new TopKHeap(K);
+            for (int slot = 0; slot < SIZE; slot++) {
+                if (slot != query && !removed[slot]) {
+                    exact.offer(SimilarityUtils.dot(vectors, offset, vectors, slot * FeatureVector.DIMENSION), slot, slot);
+                }
+            }
+            TopKHeap approximate = index.search(vectors, offset, K, EF, query);
+            for (int i = 0; i < approximate.size(); i++) {
+                if (Double.compare(approximate.similarityAt(i), exact.threshold()) >= 0) {
+                    hits++;
+                }
+            }
+            total += exact.size();
+        }
+        return (double) hits / total;
+    }
+
+    private double[] randomVectors(Random random, int size) {
+        double[] vectors = new double[size * FeatureVector.DIMENSION];
+        double[] raw = new double[FeatureVector.DIMENSION];
+        for (int slot = 0; slot < size; slot++) {
+            for (int d = 0; d < raw.length; d++) {
+                raw[d] = random.nextGaussian();
+            }
+            System.arraycopy(FeatureVector.of(raw).values(), 0, vectors, slot * FeatureVector.DIMENSION, FeatureVector.DIMENSION);
+        }
+        return vectors;
+    }
+}
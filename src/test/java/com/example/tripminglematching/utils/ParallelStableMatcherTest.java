@@ -0,0 +1,46 @@
+package com.example.tripminglematching.utils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+
+class ParallelStableMatcherTest {
+
+    @Test
+    void matchesSequentialStableMatcher() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            Random random = new Random(11);
+            for (int round = 0; round < 20; round++) {
+                int users = 1 + random.nextInt(2000);
+                int boards = 1 + random.nextInt(80);
+                double[][] score = new double[users][boards];
+                for (int u = 0; u < users; u++) {
+                    for (int b = 0; b < boards; b++) {
+                        //점수가 같은 경우와 작성자 본인(-INF), 선호 조건에 걸린 쌍(EXCLUDED)도 섞는다.
+                        int kind = random.nextInt(10);
+                        score[u][b] = kind == 0 ? -100.0 : kind == 1 ? StableMatcher.EXCLUDED
+                            : Math.round(random.nextDouble() * 40) / 20.0 - 1;
+                    }
+                }
+                int perUser = Math.min(10, boards);
+                int capacity = (users * perUser + boards - 1) / boards;
+
+                MatchingResult expected = StableMatcher.match(users, boards, perUser, capacity, (u, b) -> score[u][b]);
+                MatchingResult actual = ParallelStableMatcher.match(users, boards, perUser, capacity, (u, b) -> score[u][b], pool);
+
+                for (int u = 0; u < users; u++) {
+                    assertArrayEquals(expected.boardsOf(u), actual.boardsOf(u));
+                    for (int board : actual.boardsOf(u)) {
+                        assertNotEquals(StableMatcher.EXCLUDED, score[u][board]);
+                    }
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
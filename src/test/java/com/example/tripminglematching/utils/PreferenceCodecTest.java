@@ -0,0 +1,36 @@
+package com.example.tripminglematching.utils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+class PreferenceCodecTest {
+
+    private final long[] ids = {5L, 17L, 3L};
+    private final double[] similarities = {0.91234567891, 0.5, -0.25};
+
+    @Test
+    void jsonKeepsLegacyLayout() {
+        byte[] encoded = PreferenceCodec.encodeJson(ids, similarities, 3);
+
+        assertEquals("\"[{\\\"5\\\":0.91234567891},{\\\"17\\\":0.5},{\\\"3\\\":-0.25}]\"",
+            new String(encoded, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void binaryLayout() {
+        ByteBuffer encoded = ByteBuffer.wrap(PreferenceCodec.encodeBinary(ids, similarities, 3));
+
+        assertEquals(6 + 3 * 12, encoded.remaining());
+        assertEquals(PreferenceCodec.MAGIC, encoded.get());
+        assertEquals(PreferenceCodec.VERSION, encoded.get());
+        assertEquals(3, encoded.getInt());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(ids[i], encoded.getLong());
+            assertEquals((float) similarities[i], encoded.getFloat());
+        }
+    }
+}
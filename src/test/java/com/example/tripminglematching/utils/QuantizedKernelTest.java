@@ -0,0 +1,65 @@
+package com.example.tripminglematching.utils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class QuantizedKernelTest {
+
+    private static final double[] WEIGHTS = {
+        12.0, 12.0, 12.0, 12.0, 8.0, 10.0, 7.0, 7.0, 9.0, 9.0, 9.0, 9.0, 9.0, 7.0, 12.0, 12.0
+    };
+
+    @Test
+    void matchesDoublePath() {
+        QuantizedKernel kernel = new QuantizedKernel(WEIGHTS);
+        Random random = new Random(11);
+        byte[] codes = new byte[2 * FeatureVector.DIMENSION];
+        for (int i = 0; i < 10_000; i++) {
+            double[] a = randomFeatures(random);
+            double[] b = randomFeatures(random);
+            assertTrue(kernel.encode(a, codes, 0));
+            assertTrue(kernel.encode(b, codes, FeatureVector.DIMENSION));
+
+            int dot = kernel.dot(codes, 0, codes, FeatureVector.DIMENSION);
+            int normA = kernel.squaredNorm(codes, 0);
+            int normB = kernel.squaredNorm(codes, FeatureVector.DIMENSION);
+            //정수 값은 정규화 전 double 계산과 정확히 같다.
+            assertEquals(SimilarityUtils.dot(a, 0, b, 0), dot);
+            assertEquals(SimilarityUtils.dot(a, 0, a, 0), normA);
+
+            double expected = SimilarityUtils.dot(FeatureVector.of(a).values(), 0, FeatureVector.of(b).values(), 0);
+            double actual = QuantizedKernel.similarity(dot, normA, normB);
+            if (Double.isNaN(expected)) {
+                assertTrue(Double.isNaN(actual));
+            } else {
+                assertEquals(expected, actual, 1e-12);
+            }
+        }
+    }
+
+    @Test
+    void rejectsValuesWithoutCode() {
+        QuantizedKernel kernel = new QuantizedKernel(WEIGHTS);
+        byte[] codes = new byte[FeatureVector.DIMENSION];
+        double[] features = new double[FeatureVector.DIMENSION];
+        features[3] = 6.0;
+        assertFalse(kernel.encode(features, codes, 0));
+        features[3] = 12.0 * (QuantizedKernel.CODE_LIMIT + 1);
+        assertFalse(kernel.encode(features, codes, 0));
+        features[3] = -12.0 * QuantizedKernel.CODE_LIMIT;
+        assertTrue(kernel.encode(features, codes, 0));
+        assertEquals(-QuantizedKernel.CODE_LIMIT, codes[3]);
+    }
+
+    //응답 1~5에 게시물 선호 조건 보정까지 들어간 범위
+    private static double[] randomFeatures(Random random) {
+        double[] features = new double[FeatureVector.DIMENSION];
+        for (int d = 0; d < FeatureVector.DIMENSION; d++) {
+            features[d] = (random.nextInt(2 * QuantizedKernel.CODE_LIMIT + 1) - QuantizedKernel.CODE_LIMIT) * WEIGHTS[d];
+        }
+        return features;
+    }
+}
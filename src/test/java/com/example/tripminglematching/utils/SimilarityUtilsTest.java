@@ -0,0 +1,77 @@
+package com.example.tripminglematching.utils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class SimilarityUtilsTest {
+
+    @Test
+    void normalizedDotMatchesListCosine() {
+        Random random = new Random(42);
+        for (int n = 0; n < 1000; n++) {
+            double[] a = randomVector(random);
+            double[] b = randomVector(random);
+
+            double expected = SimilarityUtils.cosineSimilarity(toList(a), toList(b));
+            double actual = normalizedDot(a, b);
+
+            assertEquals(expected, actual, 1e-12);
+        }
+    }
+
+    //Vector API를 켜든 끄든 유사도가 비트까지 같아야 상위 K개와 동점 처리가 같다. (오차 없이 비교)
+    @Test
+    void vectorKernelMatchesScalarLoopExactly() {
+        Random random = new Random(7);
+        double[] matrix = new double[64 * FeatureVector.DIMENSION];
+        for (int i = 0; i < matrix.length; i++) {
+            matrix[i] = random.nextGaussian();
+        }
+        for (int x = 0; x < 64; x++) {
+            for (int y = 0; y < 64; y++) {
+                int xOffset = x * FeatureVector.DIMENSION;
+                int yOffset = y * FeatureVector.DIMENSION;
+                double scalar = SimilarityUtils.scalarDot(matrix, xOffset, matrix, yOffset);
+                assertEquals(scalar, SimilarityUtils.dot(matrix, xOffset, matrix, yOffset));
+                if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+                    assertEquals(scalar, VectorizedDot.dot(matrix, xOffset, matrix, yOffset, FeatureVector.DIMENSION));
+                }
+            }
+        }
+    }
+
+    @Test
+    void zeroVectorKeepsNaNSimilarity() {
+        double[] zero = new double[FeatureVector.DIMENSION];
+        double[] other = randomVector(new Random(1));
+
+        assertTrue(Double.isNaN(SimilarityUtils.cosineSimilarity(toList(zero), toList(other))));
+        assertTrue(Double.isNaN(normalizedDot(zero, other)));
+    }
+
+    //정규화된 벡터끼리의 코사인 유사도는 내적과 같다.
+    private double normalizedDot(double[] a, double[] b) {
+        return SimilarityUtils.dot(FeatureVector.of(a).values(), 0, FeatureVector.of(b).values(), 0);
+    }
+
+    private double[] randomVector(Random random) {
+        double[] vector = new double[FeatureVector.DIMENSION];
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] = (random.nextInt(5) + 1 - 3.0) * (7 + random.nextInt(6));
+        }
+        return vector;
+    }
+
+    private List<Double> toList(double[] vector) {
+        List<Double> list = new ArrayList<>();
+        for (double v : vector) {
+            list.add(v);
+        }
+        return list;
+    }
+}
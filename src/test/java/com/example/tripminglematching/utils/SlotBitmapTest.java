@@ -0,0 +1,50 @@
+package com.example.tripminglematching.utils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class SlotBitmapTest {
+
+    @Test
+    void matchesBitSet() {
+        Random random = new Random(5);
+        int limit = 50_000;
+        SlotBitmap left = new SlotBitmap();
+        SlotBitmap right = new SlotBitmap();
+        BitSet expectedLeft = new BitSet();
+        BitSet expectedRight = new BitSet();
+        for (int i = 0; i < 20_000; i++) {
+            int slot = random.nextInt(limit);
+            //오른쪽은 앞쪽 블록에만 몰리게 해서 빈 블록을 만든다.
+            int other = random.nextInt(limit / 4);
+            if (random.nextInt(4) == 0) {
+                left.clear(slot);
+                expectedLeft.clear(slot);
+            } else {
+                left.set(slot);
+                expectedLeft.set(slot);
+            }
+            right.set(other);
+            expectedRight.set(other);
+        }
+        assertEquals(expectedLeft.cardinality(), left.cardinality());
+
+        SlotBitmap intersection = new SlotBitmap().or(left).and(right);
+        SlotBitmap union = new SlotBitmap().or(left).or(right);
+        BitSet expectedIntersection = (BitSet) expectedLeft.clone();
+        expectedIntersection.and(expectedRight);
+        BitSet expectedUnion = (BitSet) expectedLeft.clone();
+        expectedUnion.or(expectedRight);
+        for (int slot = 0; slot < limit; slot++) {
+            assertEquals(expectedLeft.get(slot), left.get(slot));
+            assertEquals(expectedIntersection.get(slot), intersection.get(slot));
+            assertEquals(expectedUnion.get(slot), union.get(slot));
+        }
+        assertEquals(expectedIntersection.cardinality(), intersection.cardinality());
+        assertTrue(intersection.wordCount() < left.wordCount());
+    }
+}
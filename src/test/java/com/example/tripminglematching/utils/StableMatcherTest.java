@@ -0,0 +1,137 @@
+package com.example.tripminglematching.utils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class StableMatcherTest {
+
+    @Test
+    void matchesListBasedGaleShapley() {
+        Random random = new Random(7);
+        for (int round = 0; round < 20; round++) {
+            int users = 1 + random.nextInt(300);
+            int boards = 1 + random.nextInt(60);
+            double[][] score = new double[users][boards];
+            for (int u = 0; u < users; u++) {
+                for (int b = 0; b < boards; b++) {
+                    score[u][b] = random.nextDouble() * 2 - 1;
+                }
+            }
+            int perUser = Math.min(10, boards);
+            int capacity = (users * perUser + boards - 1) / boards;
+
+            MatchingResult result = StableMatcher.match(users, boards, perUser, capacity, (u, b) -> score[u][b]);
+            List<List<Integer>> expected = reference(score, users, boards, perUser, capacity);
+
+            for (int u = 0; u < users; u++) {
+                int[] actual = result.boardsOf(u);
+                assertEquals(expected.get(u).size(), actual.length);
+                for (int i = 0; i < actual.length; i++) {
+                    assertEquals(expected.get(u).get(i).intValue(), actual[i]);
+                }
+            }
+        }
+    }
+
+    //영벡터 유저는 모든 게시물 점수가 NaN이어도 인덱스 순서대로 제안해서 매칭된다.
+    @Test
+    void zeroNormUserStillProposes() {
+        Random random = new Random(13);
+        int users = 50;
+        int boards = 20;
+        double[][] score = new double[users][boards];
+        for (int u = 0; u < users; u++) {
+            for (int b = 0; b < boards; b++) {
+                score[u][b] = u == 3 ? Double.NaN : random.nextDouble() * 2 - 1;
+            }
+        }
+        int perUser = 5;
+        int capacity = (users * perUser + boards - 1) / boards;
+
+        MatchingResult result = StableMatcher.match(users, boards, perUser, capacity, (u, b) -> score[u][b]);
+        List<List<Integer>> expected = reference(score, users, boards, perUser, capacity);
+
+        assertEquals(perUser, result.boardsOf(3).length);
+        for (int u = 0; u < users; u++) {
+            int[] actual = result.boardsOf(u);
+            assertEquals(expected.get(u).size(), actual.length);
+            for (int i = 0; i < actual.length; i++) {
+                assertEquals(expected.get(u).get(i).intValue(), actual[i]);
+            }
+        }
+    }
+
+    //기존 matchUserAndBoard의 리스트/큐 기반 구현
+    private List<List<Integer>> reference(double[][] score, int users, int boards, int perUser, int capacity) {
+        List<Queue<Integer>> preferences = new ArrayList<>();
+        int[][] rank = new int[boards][users];
+        for (int u = 0; u < users; u++) {
+            LinkedList<Integer> order = new LinkedList<>();
+            for (int b = 0; b < boards; b++) {
+                order.add(b);
+            }
+            int user = u;
+            order.sort(Comparator.comparingDouble((Integer b) -> score[user][b]).reversed());
+            preferences.add(order);
+        }
+        for (int b = 0; b < boards; b++) {
+            List<Integer> order = new ArrayList<>();
+            for (int u = 0; u < users; u++) {
+                order.add(u);
+            }
+            int board = b;
+            order.sort(Comparator.comparingDouble((Integer u) -> score[u][board]).reversed());
+            for (int i = 0; i < users; i++) {
+                rank[b][order.get(i)] = i;
+            }
+        }
+
+        List<List<Integer>> matches = new ArrayList<>();
+        List<PriorityQueue<int[]>> boardMatches = new ArrayList<>();
+        for (int u = 0; u < users; u++) {
+            matches.add(new ArrayList<>());
+        }
+        for (int b = 0; b < boards; b++) {
+            boardMatches.add(new PriorityQueue<>((x, y) -> Integer.compare(y[0], x[0])));
+        }
+        Queue<Integer> free = new LinkedList<>();
+        for (int u = 0; u < users; u++) {
+            free.add(u);
+        }
+        while (!free.isEmpty()) {
+            int u = free.poll();
+            Queue<Integer> prefs = preferences.get(u);
+            while (!prefs.isEmpty() && matches.get(u).size() < perUser) {
+                int b = prefs.poll();
+                PriorityQueue<int[]> current = boardMatches.get(b);
+                if (current.size() < capacity) {
+                    current.add(new int[]{rank[b][u], u});
+                    matches.get(u).add(b);
+                    break;
+                }
+                int[] least = current.peek();
+                if (rank[b][u] < least[0]) {
+                    current.poll();
+                    current.add(new int[]{rank[b][u], u});
+                    matches.get(least[1]).remove(Integer.valueOf(b));
+                    matches.get(u).add(b);
+                    free.add(least[1]);
+                    break;
+                }
+            }
+            if (matches.get(u).size() < perUser && !prefs.isEmpty()) {
+                free.add(u);
+            }
+        }
+        return matches;
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.tripminglematching.utils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class StableMatchingRepairTest {
+
+    private static final int DIMENSION = 4;
+
+    @Test
+    void repairedMatchingEqualsFullRerun() {
+        Random random = new Random(17);
+        for (int round = 0; round < 30; round++) {
+            int users = 50 + random.nextInt(200);
+            int boards = 12 + random.nextInt(30);
+            double[][] userVectors = randomVectors(random, users + 1);
+            double[][] boardVectors = randomVectors(random, boards + 1);
+            int perUser = 10;
+            int capacity = (users * perUser + boards - 1) / boards + 1;
+
+            MatchingResult previous = StableMatcher.match(users, boards, perUser, capacity,
+                (u, b) -> dot(userVectors[u], boardVectors[b]));
+
+            //게시물 하나의 벡터와 유저 하나의 벡터를 바꾸고, 게시물 하나와 유저 하나를 끝에 추가한다.
+            int changedBoard = random.nextInt(boards);
+            int changedUser = random.nextInt(users);
+            boardVectors[changedBoard] = randomVectors(random, 1)[0];
+            userVectors[changedUser] = randomVectors(random, 1)[0];
+            int newUsers = users + 1;
+            int newBoards = boards + 1;
+            StableMatcher.ScoreFunction score = (u, b) -> dot(userVectors[u], boardVectors[b]);
+
+            int[] initialMatches = new int[newUsers * perUser];
+            int[] initialCounts = new int[newUsers];
+            boolean[] dirtyUsers = new boolean[newUsers];
+            boolean[] dirtyBoards = new boolean[newBoards];
+            dirtyUsers[changedUser] = true;
+            dirtyUsers[users] = true;
+            dirtyBoards[changedBoard] = true;
+            dirtyBoards[boards] = true;
+            for (int u = 0; u < users; u++) {
+                for (int b : previous.boardsOf(u)) {
+                    if (u == changedUser || b == changedBoard) {
+                        dirtyUsers[u] = true;
+                        dirtyBoards[b] = true;
+                        continue;
+                    }
+                    initialMatches[u * perUser + initialCounts[u]++] = b;
+                }
+            }
+
+            MatchingResult repaired = StableMatchingRepair.repair(newUsers, newBoards, perUser, capacity, score,
+                initialMatches, initialCounts, dirtyUsers, dirtyBoards);
+            MatchingResult expected = StableMatcher.match(newUsers, newBoards, perUser, capacity, score);
+
+            for (int u = 0; u < newUsers; u++) {
+                assertArrayEquals(expected.boardsOf(u), repaired.boardsOf(u));
+            }
+        }
+    }
+
+    private static double[][] randomVectors(Random random, int count) {
+        double[][] vectors = new double[count][DIMENSION];
+        for (double[] vector : vectors) {
+            for (int i = 0; i < DIMENSION; i++) {
+                vector[i] = random.nextGaussian();
+            }
+        }
+        return vectors;
+    }
+
+    private static double dot(double[] a, double[] b) {
+        double sum = 0;
+        for (int i = 0; i < DIMENSION; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+}
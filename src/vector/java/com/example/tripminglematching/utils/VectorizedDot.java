@@ -0,0 +1,37 @@
+package com.example.tripminglematching.utils;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorSpecies;
+
+// jdk.incubator.vector 모듈이 로드된 경우에만 SimilarityUtils에서 사용한다.
+// SimilarityUtils.scalarDot과 비트까지 같은 값을 내도록 LANES개 누산기에 곱한 뒤 더하고(FMA 없이), 마지막에 정해진 순서로 합친다.
+// 레인 합치기(reduceLanes)는 더하는 순서가 정해져 있지 않아서 쓰지 않는다.
+final class VectorizedDot {
+
+    static final int LANES = 4;
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_256;
+
+    private VectorizedDot() {
+    }
+
+    static double dot(double[] a, int aOffset, double[] b, int bOffset, int length) {
+        DoubleVector acc = DoubleVector.zero(SPECIES);
+        int i = 0;
+        int bound = SPECIES.loopBound(length);
+        for (; i < bound; i += LANES) {
+            DoubleVector va = DoubleVector.fromArray(SPECIES, a, aOffset + i);
+            DoubleVector vb = DoubleVector.fromArray(SPECIES, b, bOffset + i);
+            acc = acc.add(va.mul(vb));
+        }
+        double sum = (acc.lane(0) + acc.lane(1)) + (acc.lane(2) + acc.lane(3));
+        for (; i < length; i++) {
+            sum += a[aOffset + i] * b[bOffset + i];
+        }
+        return sum;
+    }
+
+    //256비트 벡터를 하드웨어가 바로 지원할 때만 쓴다. 더 좁으면 에뮬레이션이라 스칼라 루프보다 느리다.
+    static boolean supported() {
+        return DoubleVector.SPECIES_PREFERRED.length() >= LANES;
+    }
+}